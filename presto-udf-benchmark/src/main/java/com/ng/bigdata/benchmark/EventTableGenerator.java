@@ -0,0 +1,98 @@
+package com.ng.bigdata.benchmark;
+
+import com.facebook.presto.testing.LocalQueryRunner;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/19 10:20
+ * @Desc: 生成合成的事件表 memory.default.events(distinct_id, ctime, event, revenue)
+ * <p>
+ * 通过 CREATE TABLE AS 和 unnest(sequence(...)) 在 memory connector 中生成，结果是确定的，方便不同版本之间对比:
+ * users      用户数
+ * events     平均每个用户的事件数
+ * skew       每个用户事件数的倾斜程度(Zipf 指数)，0 表示每个用户事件数相同，越大头部用户越重，单个用户最多 10000 个事件
+ * vocabulary 事件的种类数，事件名为 event_0, event_1, ...
+ * days       事件时间分布的天数，从 start_date 开始
+ */
+public class EventTableGenerator {
+    public static final String TABLE = "events";
+
+    // sequence 一次最多生成 10000 个元素
+    private static final int MAX_EVENTS_PER_USER = 10000;
+    private static final int USER_BLOCK = 1000;
+    private static final long DAY_MILLIS = 86400000L;
+
+    private final int users;
+    private final int events;
+    private final double skew;
+    private final int vocabulary;
+    private final int days;
+    private final LocalDate startDate;
+    private final ZoneId timeZone;
+
+    public EventTableGenerator(Map<String, String> config) {
+        this.users = Integer.parseInt(config.getOrDefault("users", "100000"));
+        this.events = Integer.parseInt(config.getOrDefault("events", "50"));
+        this.skew = Double.parseDouble(config.getOrDefault("skew", "0"));
+        this.vocabulary = Integer.parseInt(config.getOrDefault("vocabulary", "10"));
+        this.days = Integer.parseInt(config.getOrDefault("days", "30"));
+        this.startDate = LocalDate.parse(config.getOrDefault("start_date", "2020-06-01"));
+        this.timeZone = ZoneId.of(config.getOrDefault("time_zone", "UTC"));
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public ZoneId getTimeZone() {
+        return timeZone;
+    }
+
+    public int getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * 生成事件表
+     *
+     * @return 事件表的行数
+     */
+    public long create(LocalQueryRunner queryRunner) {
+        queryRunner.execute("DROP TABLE IF EXISTS " + TABLE);
+        queryRunner.execute(createTableSql());
+        return (long) queryRunner.execute("SELECT count(*) FROM " + TABLE).getOnlyValue();
+    }
+
+    String createTableSql() {
+        long base = startDate.atStartOfDay(timeZone).toInstant().toEpochMilli();
+        long span = days * DAY_MILLIS;
+        int blocks = (users + USER_BLOCK - 1) / USER_BLOCK;
+        return "CREATE TABLE " + TABLE + " AS\n" +
+                "SELECT\n" +
+                "    user_id AS distinct_id,\n" +
+                "    " + base + " + ((user_id * 7919 + seq * 104729) * 1000) % " + span + " AS ctime,\n" +
+                "    'event_' || CAST((user_id * 31 + seq * 17) % " + vocabulary + " AS varchar) AS event,\n" +
+                "    CAST((user_id * 131 + seq * 7) % 100000 AS double) / 100 AS revenue\n" +
+                "FROM (\n" +
+                "    SELECT b.u1 * " + USER_BLOCK + " + a.u0 AS user_id\n" +
+                "    FROM UNNEST(sequence(0, " + (USER_BLOCK - 1) + ")) AS a(u0)\n" +
+                "    CROSS JOIN UNNEST(sequence(0, " + (blocks - 1) + ")) AS b(u1)\n" +
+                ") u\n" +
+                "CROSS JOIN UNNEST(sequence(1, CAST(greatest(1, least(" + MAX_EVENTS_PER_USER + ", " +
+                "round(" + scale() + " * power(user_id + 1, " + (-skew) + ")))) AS bigint))) AS e(seq)\n" +
+                "WHERE user_id < " + users;
+    }
+
+    // Zipf 分布下让平均每个用户的事件数为 events: events / mean(r^-skew)
+    private double scale() {
+        double sum = 0;
+        for (int rank = 1; rank <= users; rank++) {
+            sum += Math.pow(rank, -skew);
+        }
+        return events / (sum / users);
+    }
+}
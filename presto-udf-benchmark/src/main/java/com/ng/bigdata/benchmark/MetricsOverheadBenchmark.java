@@ -0,0 +1,93 @@
+package com.ng.bigdata.benchmark;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.IntegerType;
+import com.ng.bigdata.presto.aggregation.funnel.Funnel;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelState;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelStateFactory;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/20 14:00
+ * @Desc: 指标开关打开和关闭时 funnel 每行的耗时对比，直接调用 input/output，排除查询本身的开销
+ * <p>
+ * 两种模式交替执行多轮，避免 JIT 和 GC 的先后顺序影响结果，每轮输出 ns/row
+ * <p>
+ * eg: java -cp presto-udf-benchmark.jar com.ng.bigdata.benchmark.MetricsOverheadBenchmark rows=10000000 rounds=10 users=100000
+ */
+public class MetricsOverheadBenchmark {
+    private static final Slice EVENTS = Slices.utf8Slice("AppStart,AppClick,AppPageView,AppEnd");
+    private static final long WINDOW = 86400000L;
+
+    public static void main(String[] args) {
+        Map<String, String> config = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("arguments must be key=value: " + arg);
+            }
+            config.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        long rows = Long.parseLong(config.getOrDefault("rows", "10000000"));
+        int rounds = Integer.parseInt(config.getOrDefault("rounds", "10"));
+        int users = Integer.parseInt(config.getOrDefault("users", "100000"));
+        // 用户数多于行数时每个用户至少一行
+        long rowsPerUser = Math.max(1, rows / Math.max(users, 1));
+
+        Slice[] names = new Slice[4];
+        String[] split = EVENTS.toStringUtf8().split(",");
+        for (int i = 0; i < names.length; i++) {
+            names[i] = Slices.utf8Slice(split[i]);
+        }
+
+        UdfMetrics metrics = UdfMetrics.getInstance();
+        boolean enabled = metrics.isEnabled();
+        long[] totals = new long[2];
+        long checksum = 0;
+        try {
+            for (int round = 0; round < rounds * 2; round++) {
+                boolean on = round % 2 == 0;
+                metrics.setEnabled(on);
+                long start = System.nanoTime();
+                checksum += run(rows, rowsPerUser, names);
+                long nanos = System.nanoTime() - start;
+                // 第一轮两种模式都作为预热
+                if (round >= 2) {
+                    totals[on ? 0 : 1] += nanos;
+                }
+                System.out.printf("round %d metrics=%s %.2f ns/row%n", round / 2, on, (double) nanos / rows);
+            }
+        } finally {
+            metrics.setEnabled(enabled);
+        }
+        if (rounds > 1) {
+            double on = (double) totals[0] / rows / (rounds - 1);
+            double off = (double) totals[1] / rows / (rounds - 1);
+            System.out.printf("metrics on %.2f ns/row, off %.2f ns/row, overhead %.2f%% (checksum %d)%n",
+                    on, off, (on - off) / off * 100, checksum);
+        }
+    }
+
+    // 每个用户 rowsPerUser 个事件，结束时 output，与最终聚合的调用顺序一致
+    private static long run(long rows, long rowsPerUser, Slice[] names) {
+        long checksum = 0;
+        FunnelStateFactory factory = new FunnelStateFactory();
+        FunnelState state = factory.createSingleState();
+        for (long row = 0; row < rows; row++) {
+            Funnel.input(state, row * 1000, WINDOW, names[(int) (row & 3)], EVENTS);
+            if ((row + 1) % rowsPerUser == 0) {
+                BlockBuilder out = IntegerType.INTEGER.createBlockBuilder(null, 1);
+                Funnel.output(state, out);
+                checksum += IntegerType.INTEGER.getLong(out.build(), 0);
+                state = factory.createSingleState();
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,186 @@
+package com.ng.bigdata.benchmark;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.plugin.memory.MemoryConnectorFactory;
+import com.facebook.presto.testing.LocalQueryRunner;
+import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.testing.MaterializedRow;
+import com.google.common.collect.ImmutableMap;
+import com.ng.bigdata.presto.PrestoUdfPlugin;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.facebook.presto.common.type.TimeZoneKey.getTimeZoneKey;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/19 11:00
+ * @Desc: 在进程内的 LocalQueryRunner 中安装 PrestoUdfPlugin，对合成事件表执行完整查询，
+ * 包括规划、算子、状态序列化和分组状态扩容的开销，而不是只测静态方法
+ * <p>
+ * 每个查询先预热再执行多次，每次记录墙钟时间、CPU 时间、堆内存峰值和输出大小，
+ * 以 JSON Lines 追加到报告文件，用 label 区分不同版本的构建
+ * <p>
+ * 参数均为 key=value:
+ * label=dev runs=5 warmups=2 output=benchmark-report.jsonl queries=funnel,retention_merge
+ * 以及 EventTableGenerator 的 users, events, skew, vocabulary, days, start_date, time_zone
+ * <p>
+ * eg: java -cp presto-udf-benchmark.jar com.ng.bigdata.benchmark.PluginQueryBenchmark users=1000000 events=100 skew=1.1 label=$(git rev-parse --short HEAD)
+ */
+public class PluginQueryBenchmark {
+    private static final int FIRST_LENGTH = 7;
+    private static final int SECOND_LENGTH = 7;
+    private static final long FUNNEL_WINDOW = 7 * 86400000L;
+
+    public static void main(String[] args)
+            throws IOException {
+        Map<String, String> config = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("arguments must be key=value: " + arg);
+            }
+            config.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        String label = config.getOrDefault("label", "dev");
+        int runs = Integer.parseInt(config.getOrDefault("runs", "5"));
+        int warmups = Integer.parseInt(config.getOrDefault("warmups", "2"));
+        String output = config.getOrDefault("output", "benchmark-report.jsonl");
+
+        EventTableGenerator generator = new EventTableGenerator(config);
+        Map<String, String> queries = queries(generator);
+        if (config.containsKey("queries")) {
+            queries.keySet().retainAll(Arrays.asList(config.get("queries").split(",")));
+        }
+
+        Session session = testSessionBuilder()
+                .setCatalog("memory")
+                .setSchema("default")
+                .setTimeZoneKey(getTimeZoneKey(generator.getTimeZone().getId()))
+                .build();
+        try (LocalQueryRunner queryRunner = new LocalQueryRunner(session);
+                PrintWriter report = new PrintWriter(new FileWriter(output, true))) {
+            queryRunner.createCatalog("memory", new MemoryConnectorFactory(), ImmutableMap.of());
+            queryRunner.installPlugin(new PrestoUdfPlugin());
+
+            long inputRows = generator.create(queryRunner);
+            System.out.printf("generated %d rows%n", inputRows);
+
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                for (int i = 0; i < warmups; i++) {
+                    queryRunner.execute(query.getValue());
+                }
+                for (int run = 0; run < runs; run++) {
+                    String line = measure(queryRunner, label, query.getKey(), query.getValue(), run, inputRows, config);
+                    System.out.println(line);
+                    report.println(line);
+                }
+                report.flush();
+            }
+        }
+    }
+
+    static Map<String, String> queries(EventTableGenerator generator) {
+        String table = EventTableGenerator.TABLE;
+        String funnelEvents = "event_0,event_1,event_2";
+        String retentionEvents = "event_0,event_1";
+        String startDate = generator.getStartDate().toString();
+
+        String funnel = "SELECT distinct_id, funnel(ctime, " + FUNNEL_WINDOW + ", event, '" + funnelEvents + "') AS user_state " +
+                "FROM " + table + " GROUP BY distinct_id";
+        // 原来的写法: 调用方每行计算 date_diff
+        String retention = "SELECT distinct_id, retention(" +
+                "date_diff('day', from_iso8601_timestamp('2007-01-01'), from_unixtime(ctime / 1000)), " +
+                "date_diff('day', from_iso8601_timestamp('2007-01-01'), from_iso8601_timestamp('" + startDate + "')), " +
+                FIRST_LENGTH + ", " + SECOND_LENGTH + ", event, '" + retentionEvents + "', '" + retentionEvents + "') AS user_state " +
+                "FROM " + table + " GROUP BY distinct_id";
+        // 直接传入 ctime，由函数分桶
+        String retentionCtime = "SELECT distinct_id, retention(ctime, '" + startDate + "', '" + generator.getTimeZone().getId() + "', 'day', " +
+                FIRST_LENGTH + ", " + SECOND_LENGTH + ", event, '" + retentionEvents + "', '" + retentionEvents + "') AS user_state " +
+                "FROM " + table + " GROUP BY distinct_id";
+
+        // 一次计算1天、3天、7天三个窗口
+        String funnelWindows = "SELECT distinct_id, funnel(ctime, array[86400000, 3 * 86400000, " + FUNNEL_WINDOW + "], event, '" + funnelEvents + "') AS user_state " +
+                "FROM " + table + " GROUP BY distinct_id";
+
+        String sessionize = "SELECT distinct_id, sessionize(ctime, 1800000, event) AS user_state FROM " + table + " GROUP BY distinct_id";
+        String path = "SELECT distinct_id, path_transitions(ctime, event, 'event_0', 4) AS user_path FROM " + table + " GROUP BY distinct_id";
+
+        // 第一阶段的结果需要被引用，否则会被优化器裁剪掉
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("sum", "SELECT event, sum(revenue) FROM " + table + " GROUP BY event");
+        queries.put("sum_double", "SELECT event, sum_double(revenue) FROM " + table + " GROUP BY event");
+        queries.put("funnel", "SELECT sum(user_state) FROM (" + funnel + ")");
+        queries.put("funnel_merge", "SELECT funnel_merge(user_state, 3) FROM (" + funnel + ")");
+        queries.put("retention", "SELECT sum(user_state[1]), sum(user_state[2]) FROM (" + retention + ")");
+        queries.put("retention_ctime", "SELECT sum(user_state[1]), sum(user_state[2]) FROM (" + retentionCtime + ")");
+        queries.put("retention_merge", "SELECT retention_merge(user_state, " + FIRST_LENGTH + ", " + SECOND_LENGTH + ") FROM (" + retention + ")");
+        queries.put("retention_merge_ctime", "SELECT retention_merge(user_state, " + FIRST_LENGTH + ", " + SECOND_LENGTH + ") FROM (" + retentionCtime + ")");
+        queries.put("retention_rolling_merge", "SELECT retention_rolling_merge(user_state, " + FIRST_LENGTH + ", " + SECOND_LENGTH + ") FROM (" + retentionCtime + ")");
+        queries.put("funnel_merge_windows", "SELECT funnel_merge(user_state, 3) FROM (" + funnelWindows + ")");
+        // 以下几个函数逐行缓存事件，用来对比追加事件和中间结果序列化的开销
+        queries.put("sessionize", "SELECT sum(user_state[1]) FROM (" + sessionize + ")");
+        queries.put("sessionize_merge", "SELECT sessionize_merge(user_state, 10) FROM (" + sessionize + ")");
+        queries.put("path_transitions", "SELECT count(user_path) FROM (" + path + ")");
+        queries.put("path_transitions_merge", "SELECT path_transitions_merge(user_path, 20) FROM (" + path + ")");
+        return queries;
+    }
+
+    private static String measure(LocalQueryRunner queryRunner, String label, String name, String sql, int run, long inputRows, Map<String, String> config) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long threadCpu = threads.getCurrentThreadCpuTime();
+        long processCpu = os.getProcessCpuTime();
+        long wall = System.nanoTime();
+
+        MaterializedResult result = queryRunner.execute(sql);
+
+        wall = System.nanoTime() - wall;
+        threadCpu = threads.getCurrentThreadCpuTime() - threadCpu;
+        processCpu = os.getProcessCpuTime() - processCpu;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        long outputBytes = 0;
+        for (MaterializedRow row : result.getMaterializedRows()) {
+            for (Object field : row.getFields()) {
+                outputBytes += String.valueOf(field).length();
+            }
+        }
+
+        return "{\"label\":\"" + label + "\"" +
+                ",\"query\":\"" + name + "\"" +
+                ",\"run\":" + run +
+                ",\"users\":" + config.getOrDefault("users", "100000") +
+                ",\"events\":" + config.getOrDefault("events", "50") +
+                ",\"skew\":" + config.getOrDefault("skew", "0") +
+                ",\"input_rows\":" + inputRows +
+                ",\"wall_ms\":" + wall / 1_000_000 +
+                ",\"thread_cpu_ms\":" + threadCpu / 1_000_000 +
+                ",\"process_cpu_ms\":" + processCpu / 1_000_000 +
+                ",\"rows_per_second\":" + (wall == 0 ? 0 : (long) (inputRows * 1e9 / wall)) +
+                ",\"peak_heap_bytes\":" + peakHeap +
+                ",\"output_rows\":" + result.getRowCount() +
+                ",\"output_bytes\":" + outputBytes +
+                "}";
+    }
+}
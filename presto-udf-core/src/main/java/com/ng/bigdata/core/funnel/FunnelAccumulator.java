@@ -0,0 +1,251 @@
+package com.ng.bigdata.core.funnel;
+
+import java.util.Arrays;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 10:10
+ * @Desc: 漏斗第一阶段的累加器，与引擎无关
+ * 按用户缓存 (事件时间, 事件索引)，事件索引为事件在漏斗中的下标(0, 1, 2 ...)
+ * finish 时按时间排序，计算用户在窗口内依次完成的漏斗深度
+ * <p>
+ * 事件存放在两个可扩容的基本类型数组中，追加事件不需要每次重新分配和拷贝整个状态
+ * <p>
+ * 事件数超过 PARALLEL_THRESHOLD 的用户(爬虫、测试账号等)在 finish 时用 fork-join 并行排序，
+ * 排序后的深度计算是一次线性扫描，普通用户仍然走单线程排序
+ */
+public class FunnelAccumulator {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // 超过该事件数时并行排序
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    // 窗口大小，多个窗口时为最大的窗口
+    private final long windows;
+    // 多个窗口时的窗口列表，一次排序后分别计算每个窗口的深度，单个窗口时为null
+    private final long[] windowList;
+    // 漏斗事件个数
+    private final int eventCount;
+
+    private long[] times;
+    private byte[] events;
+    private int size;
+
+    public FunnelAccumulator(long windows, int eventCount) {
+        this(windows, eventCount, INITIAL_CAPACITY);
+    }
+
+    public FunnelAccumulator(long windows, int eventCount, int expectedSize) {
+        this(windows, null, eventCount, expectedSize);
+    }
+
+    public FunnelAccumulator(long[] windowList, int eventCount) {
+        this(windowList, eventCount, INITIAL_CAPACITY);
+    }
+
+    public FunnelAccumulator(long[] windowList, int eventCount, int expectedSize) {
+        this(Arrays.stream(windowList).max().orElse(0), windowList, eventCount, expectedSize);
+    }
+
+    /**
+     * 直接使用反序列化得到的事件数组，不拷贝
+     */
+    public FunnelAccumulator(long windows, int eventCount, long[] times, byte[] events) {
+        this(windows, null, eventCount, times, events);
+    }
+
+    public FunnelAccumulator(long[] windowList, int eventCount, long[] times, byte[] events) {
+        this(Arrays.stream(windowList).max().orElse(0), windowList, eventCount, times, events);
+    }
+
+    private FunnelAccumulator(long windows, long[] windowList, int eventCount, int expectedSize) {
+        this(windows, windowList, eventCount, new long[Math.max(expectedSize, 1)], new byte[Math.max(expectedSize, 1)]);
+        this.size = 0;
+    }
+
+    private FunnelAccumulator(long windows, long[] windowList, int eventCount, long[] times, byte[] events) {
+        this.windows = windows;
+        this.windowList = windowList;
+        this.eventCount = eventCount;
+        this.times = times;
+        this.events = events;
+        this.size = times.length;
+    }
+
+    public long getWindows() {
+        return windows;
+    }
+
+    public long[] getWindowList() {
+        return windowList;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTime(int position) {
+        return times[position];
+    }
+
+    public byte getEvent(int position) {
+        return events[position];
+    }
+
+    /**
+     * @return 事件时间，前 size 个有效，不拷贝
+     */
+    public long[] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return 事件索引，前 size 个有效，不拷贝
+     */
+    public byte[] getEvents() {
+        return events;
+    }
+
+    public void add(long time, byte event) {
+        ensureCapacity(size + 1);
+        times[size] = time;
+        events[size] = event;
+        size++;
+    }
+
+    public void merge(FunnelAccumulator other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.times, 0, times, size, other.size);
+        System.arraycopy(other.events, 0, events, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * @return 漏斗深度，没有发生第一个事件时为0
+     */
+    public int finish() {
+        return finish(PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallelThreshold 事件数不小于该值时并行排序
+     * @return 漏斗深度，没有发生第一个事件时为0
+     */
+    public int finish(int parallelThreshold) {
+        long[] sorted = sort(parallelThreshold);
+        return sorted == null ? 0 : evaluate(sorted, windows);
+    }
+
+    /**
+     * 多个窗口时只排序一次，分别计算每个窗口的漏斗深度
+     *
+     * @return 与 windowList 一一对应的漏斗深度，没有发生第一个事件时都为0
+     */
+    public int[] finishWindows() {
+        long[] list = windowList == null ? new long[] {windows} : windowList;
+        int[] depths = new int[list.length];
+        long[] sorted = sort(PARALLEL_THRESHOLD);
+        if (sorted != null) {
+            for (int i = 0; i < list.length; i++) {
+                depths[i] = evaluate(sorted, list[i]);
+            }
+        }
+        return depths;
+    }
+
+    /**
+     * @return 打包后按时间排好序的事件，没有第一个事件时为null
+     */
+    private long[] sort(int parallelThreshold) {
+        // tip 没有第一个事件(索引为0)就没有完整的漏斗
+        boolean is_a = false;
+        for (int i = 0; i < size; i++) {
+            if (events[i] == 0) {
+                is_a = true;
+                break;
+            }
+        }
+        if (!is_a) {
+            return null;
+        }
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = pack(times[i], events[i]);
+        }
+        if (size < parallelThreshold) {
+            Arrays.sort(sorted);
+        } else {
+            // tip parallelSort 是基于 ForkJoinPool.commonPool 的并行归并排序
+            Arrays.parallelSort(sorted);
+        }
+        return sorted;
+    }
+
+    private int evaluate(long[] sorted, long windows) {
+        return depth(sorted, sorted.length, windows, eventCount);
+    }
+
+    /**
+     * 在按时间排好序的事件上计算漏斗深度，O(n)
+     * starts[e] 记录走到第 e 步的链中最晚的开始时间: 第一个事件总是开启最新的链，
+     * 第 e 步(e > 0)事件只需要看 starts[e - 1] 是否还在窗口内，在就把该链延长到第 e 步
+     * tip 开始越晚的链越晚超出窗口，所以每一步只保留最晚的开始时间即可
+     *
+     * @param sorted 排好序的事件，见 pack
+     */
+    public static int depth(long[] sorted, int length, long windows, int eventCount) {
+        int event_depth = 0;
+        long[] starts = new long[eventCount];
+        boolean[] reached = new boolean[eventCount];
+        for (int position = 0; position < length; position++) {
+            long timestamp = unpackTime(sorted[position]);
+            byte event_index = unpackEvent(sorted[position]);
+            if (event_index == 0) {
+                starts[0] = timestamp;
+                reached[0] = true;
+            } else if (reached[event_index - 1] && timestamp - starts[event_index - 1] <= windows) {
+                starts[event_index] = starts[event_index - 1];
+                reached[event_index] = true;
+                if (event_depth < event_index) {
+                    event_depth = event_index;
+                    // 漏斗已经走完，退出即可
+                    if (event_depth + 1 == eventCount) {
+                        break;
+                    }
+                }
+            }
+        }
+        return event_depth + 1;
+    }
+
+    /**
+     * 把事件打包成一个long: 时间戳左移8位，低8位为事件索引，直接对long排序即为按时间(相同时按索引)排序
+     */
+    public static long pack(long time, byte event) {
+        return (time << 8) | (event & 0xFF);
+    }
+
+    public static long unpackTime(long packed) {
+        return packed >> 8;
+    }
+
+    public static byte unpackEvent(long packed) {
+        return (byte) packed;
+    }
+
+    public long estimatedSize() {
+        return 56 + 16 + 8L * times.length + 16 + events.length + (windowList == null ? 0 : 16 + 8L * windowList.length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > times.length) {
+            int newCapacity = Math.max(capacity, times.length * 2);
+            times = Arrays.copyOf(times, newCapacity);
+            events = Arrays.copyOf(events, newCapacity);
+        }
+    }
+}
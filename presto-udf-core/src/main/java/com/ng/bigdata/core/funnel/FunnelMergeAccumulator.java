@@ -0,0 +1,58 @@
+package com.ng.bigdata.core.funnel;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 10:40
+ * @Desc: 漏斗第二阶段的累加器，与引擎无关
+ * 根据每个用户的漏斗深度，统计到达每一步的用户数
+ * 比如用户漏斗深度为3，那么第1，2，3位置都要+1
+ * <p>
+ * 多个窗口时 counts 为 窗口个数*事件个数 的矩阵，第 w 行为第 w 个窗口每一步的用户数
+ */
+public class FunnelMergeAccumulator {
+    private final long[] counts;
+
+    public FunnelMergeAccumulator(int eventCount) {
+        this.counts = new long[eventCount];
+    }
+
+    public FunnelMergeAccumulator(long[] counts) {
+        this.counts = counts;
+    }
+
+    public void add(int depth) {
+        int limit = Math.min(depth, counts.length);
+        for (int status = 0; status < limit; status++) {
+            counts[status]++;
+        }
+    }
+
+    /**
+     * 多个窗口时，记录用户在第 window 个窗口下的漏斗深度
+     */
+    public void add(int window, int depth, int eventCount) {
+        int base = window * eventCount;
+        int limit = Math.min(depth, eventCount);
+        for (int status = 0; status < limit; status++) {
+            counts[base + status]++;
+        }
+    }
+
+    public void merge(FunnelMergeAccumulator other) {
+        int limit = Math.min(counts.length, other.counts.length);
+        for (int i = 0; i < limit; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * @return 每一步的用户数 [EVENT-A:3000, EVENT-B:2500, EVENT-C:1000, ......]，不拷贝
+     */
+    public long[] finish() {
+        return counts;
+    }
+
+    public long estimatedSize() {
+        return 16 + 16 + 8L * counts.length;
+    }
+}
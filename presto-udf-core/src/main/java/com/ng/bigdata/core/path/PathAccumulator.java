@@ -0,0 +1,226 @@
+package com.ng.bigdata.core.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/14 10:30
+ * @Desc: 路径分析第一阶段的累加器，与引擎无关
+ * 按用户缓存 (事件时间, 事件编号)，事件编号来自累加器自己的事件字典:
+ * 路径的事件集合事先未知，不能像漏斗那样用查询级的字典(不同 worker 的字典不一致)，
+ * 所以每个用户的状态带一份字典，每个事件名只保存一次，合并时按事件名重新映射编号
+ * <p>
+ * 事件存放在两个可扩容的基本类型数组中，追加事件不需要每次重新分配和拷贝整个状态
+ *
+ * @param <E> 事件名的类型，插件中为 Slice
+ */
+public class PathAccumulator<E> {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // 路径所能支持的最大深度，finish 时按深度分配数组并做插入排序
+    public static final int MAX_DEPTH = 100;
+
+    // 路径最大深度(含起始事件)
+    private final int maxDepth;
+    // 起始事件
+    private final E startEvent;
+    // 事件名所占字节数，用于估算状态大小
+    private final ToIntFunction<E> sizeOf;
+
+    // 事件字典: 事件名 -> 编号，编号为事件名在 names 中的下标
+    private final Map<E, Integer> dictionary = new HashMap<>();
+    private final List<E> names = new ArrayList<>();
+    private long namesSize;
+
+    private long[] times;
+    private int[] events;
+    private int size;
+
+    public PathAccumulator(int maxDepth, E startEvent, ToIntFunction<E> sizeOf) {
+        this(maxDepth, startEvent, sizeOf, INITIAL_CAPACITY);
+    }
+
+    public PathAccumulator(int maxDepth, E startEvent, ToIntFunction<E> sizeOf, int expectedSize) {
+        this(maxDepth, startEvent, sizeOf, new long[Math.max(expectedSize, 1)], new int[Math.max(expectedSize, 1)]);
+        this.size = 0;
+    }
+
+    /**
+     * 直接使用反序列化得到的事件数组，不拷贝，事件编号对应的事件名需要随后按编号顺序 define
+     */
+    public PathAccumulator(int maxDepth, E startEvent, ToIntFunction<E> sizeOf, long[] times, int[] events) {
+        if (maxDepth < 1 || maxDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("maxDepth must be between 1 and " + MAX_DEPTH + ": " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        this.startEvent = startEvent;
+        this.sizeOf = sizeOf;
+        this.times = times;
+        this.events = events;
+        this.size = times.length;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public E getStartEvent() {
+        return startEvent;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTime(int position) {
+        return times[position];
+    }
+
+    public int getEvent(int position) {
+        return events[position];
+    }
+
+    /**
+     * @return 事件时间，前 size 个有效，不拷贝
+     */
+    public long[] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return 事件编号，前 size 个有效，不拷贝
+     */
+    public int[] getEvents() {
+        return events;
+    }
+
+    public int dictionarySize() {
+        return names.size();
+    }
+
+    public E getName(int event) {
+        return names.get(event);
+    }
+
+    /**
+     * @return 事件名的编号，不在字典中时为-1
+     */
+    public int lookup(E name) {
+        Integer event = dictionary.get(name);
+        return event == null ? -1 : event;
+    }
+
+    /**
+     * 把事件名加入字典，调用方保证事件名不在字典中，
+     * 事件名会被状态长期持有，如果引用了输入数据需要调用方先拷贝
+     *
+     * @return 新的编号
+     */
+    public int define(E name) {
+        int event = names.size();
+        names.add(name);
+        dictionary.put(name, event);
+        namesSize += sizeOf.applyAsInt(name);
+        return event;
+    }
+
+    public void add(long time, int event) {
+        ensureCapacity(size + 1);
+        times[size] = time;
+        events[size] = event;
+        size++;
+    }
+
+    /**
+     * 追加另一个状态的全部事件，事件编号按事件名映射到本状态的字典
+     */
+    public void merge(PathAccumulator<E> other) {
+        int[] mapping = new int[other.names.size()];
+        for (int i = 0; i < mapping.length; i++) {
+            E name = other.names.get(i);
+            int event = lookup(name);
+            mapping[i] = event < 0 ? define(name) : event;
+        }
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.times, 0, times, size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            events[size + i] = mapping[other.events[i]];
+        }
+        size += other.size;
+    }
+
+    /**
+     * 取用户第一次发生起始事件的时间，按时间顺序取之后最早的 maxDepth - 1 个事件，
+     * 时间相同按在状态中的位置排序，插入排序，不对全部事件排序
+     *
+     * @return 路径上每个事件的编号(第一个为起始事件)，没有发生起始事件时为null
+     */
+    public int[] finish() {
+        int start = lookup(startEvent);
+        if (start < 0) {
+            return null;
+        }
+        // todo 找到第一次发生起始事件的位置
+        long start_time = Long.MAX_VALUE;
+        int start_position = -1;
+        for (int i = 0; i < size; i++) {
+            if (events[i] == start && times[i] < start_time) {
+                start_time = times[i];
+                start_position = i;
+            }
+        }
+        if (start_position < 0) {
+            return null;
+        }
+
+        int limit = maxDepth - 1;
+        long[] path_times = new long[limit];
+        int[] positions = new int[limit];
+        int path_size = 0;
+        for (int i = 0; i < size; i++) {
+            long timestamp = times[i];
+            if (i == start_position || timestamp < start_time || (timestamp == start_time && i < start_position)) {
+                continue;
+            }
+            // tip 按位置顺序遍历，时间相同时后来的事件排在后面
+            int position = path_size;
+            while (position > 0 && path_times[position - 1] > timestamp) {
+                position--;
+            }
+            if (position >= limit) {
+                continue;
+            }
+            int move = Math.min(path_size, limit - 1) - position;
+            System.arraycopy(path_times, position, path_times, position + 1, move);
+            System.arraycopy(positions, position, positions, position + 1, move);
+            path_times[position] = timestamp;
+            positions[position] = i;
+            path_size = Math.min(path_size + 1, limit);
+        }
+
+        int[] path = new int[path_size + 1];
+        path[0] = start;
+        for (int i = 0; i < path_size; i++) {
+            path[i + 1] = events[positions[i]];
+        }
+        return path;
+    }
+
+    public long estimatedSize() {
+        // tip 字典中每个事件名另算 HashMap.Node、Integer 和对象头的开销
+        return 48 + 16 + 8L * times.length + 16 + 4L * events.length + 64L * names.size() + namesSize;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > times.length) {
+            int newCapacity = Math.max(capacity, times.length * 2);
+            times = Arrays.copyOf(times, newCapacity);
+            events = Arrays.copyOf(events, newCapacity);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ng.bigdata.core.retention;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 11:00
+ * @Desc: 留存第一阶段的累加器，与引擎无关
+ * 用两个位图记录用户的状态: first 的第 i 位表示用户在起始的第 i 天(周/月)发生了起始事件，
+ * second 的第 i 位表示用户在起始日之后的第 i+1 天(周/月)发生了结束事件
+ */
+public class RetentionAccumulator {
+    // 起始时间所能支持的最大范围, 一个short的长度
+    public static final int MAX_COUNT_SHORT = 15;
+    // 能够支持的最大留存时间范围, 一个long的长度
+    public static final int MAX_COUNT_LONG = 63;
+
+    private short first;
+    private long second;
+
+    public RetentionAccumulator() {
+    }
+
+    public RetentionAccumulator(short first, long second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public short getFirst() {
+        return first;
+    }
+
+    public long getSecond() {
+        return second;
+    }
+
+    /**
+     * 记录一次起始事件
+     *
+     * @param offset 事件所在的天(周/月)距离查询起始天(周/月)的差值
+     * @param firstLength 起始事件的范围(15天, 12周, 6月)
+     */
+    public void addStart(long offset, int firstLength) {
+        first = addStart(first, offset, firstLength);
+    }
+
+    /**
+     * 记录一次结束事件
+     *
+     * @param offset 事件所在的天(周/月)距离查询起始天(周/月)的差值
+     * @param firstLength 起始事件的范围(15天, 12周, 6月)
+     * @param secondLength 留存的范围(30天, 8周, 3月)
+     */
+    public void addEnd(long offset, int firstLength, int secondLength) {
+        second = addEnd(second, offset, firstLength, secondLength);
+    }
+
+    public void merge(RetentionAccumulator other) {
+        first |= other.first;
+        second |= other.second;
+    }
+
+    /**
+     * @return [起始事件状态, 结束事件状态]
+     */
+    public long[] finish() {
+        return new long[] {first, second};
+    }
+
+    public long estimatedSize() {
+        return 16 + 2 + 8;
+    }
+
+    public static short addStart(short first, long offset, int firstLength) {
+        if (offset >= 0 && offset < firstLength && offset < MAX_COUNT_SHORT) {
+            return (short) (first | (1 << offset));
+        }
+        return first;
+    }
+
+    public static long addEnd(long second, long offset, int firstLength, int secondLength) {
+        // tip 结束事件从起始日的下一天开始算
+        long xindex = offset - 1;
+        if (xindex >= 0 && xindex < firstLength + secondLength - 1 && xindex < MAX_COUNT_LONG) {
+            return second | (1L << xindex);
+        }
+        return second;
+    }
+}
@@ -0,0 +1,100 @@
+package com.ng.bigdata.core.retention;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/16 10:15
+ * @Desc: 留存的日/周/月分桶，与引擎无关
+ * 根据起始日期、时区和粒度预先计算每个桶的起始时间(毫秒)，每行只需要一次减法和除法(或一次二分查找)就能得到事件所在的桶，
+ * 不需要每行做时间戳转换和 date_diff
+ * <p>
+ * 周以周一为第一天，月以1号为第一天，起始日期不在周一或1号时向前取整，与以 2007-01-01 为基准做 date_diff 的结果一致
+ */
+public class RetentionBuckets {
+    public static final String DAY = "day";
+    public static final String WEEK = "week";
+    public static final String MONTH = "month";
+
+    // 每个桶的起始时间，共 length + 1 个，最后一个为范围的结束时间
+    private final long[] boundaries;
+    // 每个桶长度相同时为桶的长度，否则为0(跨夏令时或按月)，需要二分查找
+    private final long unit;
+
+    private RetentionBuckets(long[] boundaries) {
+        this.boundaries = boundaries;
+        long unit = boundaries[1] - boundaries[0];
+        for (int i = 2; i < boundaries.length; i++) {
+            if (boundaries[i] - boundaries[i - 1] != unit) {
+                unit = 0;
+                break;
+            }
+        }
+        this.unit = unit;
+    }
+
+    /**
+     * @param startDate 起始日期, yyyy-MM-dd
+     * @param timeZone 时区, 如 Asia/Shanghai
+     * @param granularity day, week 或 month
+     * @param length 桶的个数
+     */
+    public static RetentionBuckets of(String startDate, String timeZone, String granularity, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("length must be positive: " + length);
+        }
+        ZoneId zone = ZoneId.of(timeZone);
+        LocalDate start = LocalDate.parse(startDate);
+        long[] boundaries = new long[length + 1];
+        switch (granularity) {
+            case DAY:
+                break;
+            case WEEK:
+                start = start.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                break;
+            case MONTH:
+                start = start.withDayOfMonth(1);
+                break;
+            default:
+                throw new IllegalArgumentException("granularity must be one of day, week, month: " + granularity);
+        }
+        for (int i = 0; i <= length; i++) {
+            LocalDate date;
+            if (MONTH.equals(granularity)) {
+                date = start.plusMonths(i);
+            } else if (WEEK.equals(granularity)) {
+                date = start.plusWeeks(i);
+            } else {
+                date = start.plusDays(i);
+            }
+            boundaries[i] = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+        return new RetentionBuckets(boundaries);
+    }
+
+    public int length() {
+        return boundaries.length - 1;
+    }
+
+    /**
+     * @param time 事件时间(毫秒)
+     * @return 事件所在的桶距离起始桶的差值，早于起始时间返回-1，晚于范围返回 length
+     */
+    public long offset(long time) {
+        if (time < boundaries[0]) {
+            return -1;
+        }
+        if (time >= boundaries[boundaries.length - 1]) {
+            return boundaries.length - 1;
+        }
+        if (unit > 0) {
+            return (time - boundaries[0]) / unit;
+        }
+        int index = Arrays.binarySearch(boundaries, time);
+        return index >= 0 ? index : -index - 2;
+    }
+}
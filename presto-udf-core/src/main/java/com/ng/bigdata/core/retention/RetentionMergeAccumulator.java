@@ -0,0 +1,91 @@
+package com.ng.bigdata.core.retention;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 11:30
+ * @Desc: 留存第二阶段的累加器，与引擎无关
+ * 以第一阶段的 [first, second] 位图为输入，统计起始范围内每一天(周/月)的留存人数
+ * <p>
+ * 比如 first_length=2, second_length=3，结果为 [x,x,x, x,x,x, x,x] 共8个值,
+ * 前 2*3 个值为起始范围内每一天之后3天每天的留存人数, 最后2个值为起始范围内每一天发生起始事件的人数
+ * <p>
+ * addRolling 统计的是滚动留存，格式相同，第 i*second_length + j 个值为第 i 天的用户在之后 j+1 天内发生过结束事件的人数，
+ * 即同一个查询里得到每一个起始日的 1~second_length 日留存趋势
+ */
+public class RetentionMergeAccumulator {
+    private final int firstLength;
+    private final int secondLength;
+    private final long[] counts;
+
+    public RetentionMergeAccumulator(int firstLength, int secondLength) {
+        this(firstLength, secondLength, new long[firstLength * secondLength + firstLength]);
+    }
+
+    public RetentionMergeAccumulator(int firstLength, int secondLength, long[] counts) {
+        this.firstLength = firstLength;
+        this.secondLength = secondLength;
+        this.counts = counts;
+    }
+
+    public int getFirstLength() {
+        return firstLength;
+    }
+
+    public int getSecondLength() {
+        return secondLength;
+    }
+
+    public void add(long first, long second) {
+        int total_offset = firstLength * secondLength;
+        // tip 只遍历为1的位
+        long remaining = first & ((1L << firstLength) - 1);
+        while (remaining != 0) {
+            int i = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            counts[total_offset + i]++;
+            for (int j = 0; j < secondLength; j++) {
+                int bit = i + j;
+                if (bit < RetentionAccumulator.MAX_COUNT_LONG && (second & (1L << bit)) != 0) {
+                    counts[i * secondLength + j]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 滚动留存: 对起始日 i，找到 second 中从第 i 位开始的第一个1，距离为 d，则 j >= d 的计数都+1
+     * 起始日每向后滑动一天只需要一次移位和 numberOfTrailingZeros，不需要重新扫描 second
+     */
+    public void addRolling(long first, long second) {
+        int total_offset = firstLength * secondLength;
+        // tip 只遍历为1的位
+        long remaining = first & ((1L << firstLength) - 1);
+        while (remaining != 0) {
+            int i = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            counts[total_offset + i]++;
+            int first_retained = Long.numberOfTrailingZeros(second >>> i);
+            // tip second 右移后全为0时 numberOfTrailingZeros 为64，不会进入循环
+            for (int j = first_retained; j < secondLength; j++) {
+                counts[i * secondLength + j]++;
+            }
+        }
+    }
+
+    public void merge(RetentionMergeAccumulator other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * @return 留存人数，格式见类注释，不拷贝
+     */
+    public long[] finish() {
+        return counts;
+    }
+
+    public long estimatedSize() {
+        return 24 + 16 + 8L * counts.length;
+    }
+}
@@ -0,0 +1,171 @@
+package com.ng.bigdata.core.funnel;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/22 14:00
+ * @Desc: FunnelAccumulator 的漏斗深度与暴力计算的结果对比
+ */
+public class TestFunnelAccumulator {
+    @Test
+    public void testNoFirstEvent() {
+        FunnelAccumulator accumulator = new FunnelAccumulator(100, 3);
+        accumulator.add(1, (byte) 1);
+        accumulator.add(2, (byte) 2);
+        assertEquals(0, accumulator.finish());
+    }
+
+    @Test
+    public void testWindow() {
+        FunnelAccumulator accumulator = new FunnelAccumulator(10, 3);
+        accumulator.add(0, (byte) 0);
+        accumulator.add(5, (byte) 1);
+        accumulator.add(11, (byte) 2);
+        assertEquals(2, accumulator.finish());
+
+        // 窗口边界(间隔正好等于窗口)算在窗口内
+        accumulator.add(10, (byte) 2);
+        assertEquals(3, accumulator.finish());
+    }
+
+    @Test
+    public void testUnordered() {
+        FunnelAccumulator accumulator = new FunnelAccumulator(100, 3);
+        accumulator.add(30, (byte) 2);
+        accumulator.add(20, (byte) 1);
+        accumulator.add(10, (byte) 0);
+        assertEquals(3, accumulator.finish());
+    }
+
+    @Test
+    public void testSameTimestamp() {
+        // tip 时间相同时按事件索引排序
+        FunnelAccumulator accumulator = new FunnelAccumulator(0, 3);
+        accumulator.add(5, (byte) 2);
+        accumulator.add(5, (byte) 1);
+        accumulator.add(5, (byte) 0);
+        assertEquals(3, accumulator.finish());
+    }
+
+    @Test
+    public void testFromArrays() {
+        // tip 反序列化时直接使用数组，之后仍然可以继续追加
+        FunnelAccumulator accumulator = new FunnelAccumulator(100, 3, new long[] {30, 10}, new byte[] {2, 0});
+        assertEquals(2, accumulator.size());
+        assertEquals(1, accumulator.finish());
+        accumulator.add(20, (byte) 1);
+        assertEquals(3, accumulator.size());
+        assertEquals(3, accumulator.finish());
+    }
+
+    @Test
+    public void testRandomAgainstOracle() {
+        Random random = new Random(1);
+        for (int round = 0; round < 2000; round++) {
+            int event_count = 2 + random.nextInt(5);
+            long windows = random.nextInt(50);
+            int size = random.nextInt(40);
+            FunnelAccumulator accumulator = new FunnelAccumulator(windows, event_count);
+            long[] times = new long[size];
+            byte[] events = new byte[size];
+            for (int i = 0; i < size; i++) {
+                times[i] = random.nextInt(200);
+                events[i] = (byte) random.nextInt(event_count);
+                accumulator.add(times[i], events[i]);
+            }
+            assertEquals("round " + round, oracle(times, events, windows, event_count), accumulator.finish());
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        Random random = new Random(2);
+        for (int round = 0; round < 500; round++) {
+            FunnelAccumulator left = new FunnelAccumulator(30, 4);
+            FunnelAccumulator right = new FunnelAccumulator(30, 4);
+            FunnelAccumulator all = new FunnelAccumulator(30, 4);
+            for (int i = 0; i < 30; i++) {
+                long time = random.nextInt(100);
+                byte event = (byte) random.nextInt(4);
+                (random.nextBoolean() ? left : right).add(time, event);
+                all.add(time, event);
+            }
+            left.merge(right);
+            assertEquals(all.size(), left.size());
+            assertEquals(all.finish(), left.finish());
+        }
+    }
+
+    @Test
+    public void testWideWindowAgainstOracle() {
+        // tip 窗口覆盖全部事件时同时开着的链最多，旧的逐链回溯在这里退化成 O(n^2)
+        Random random = new Random(4);
+        for (int round = 0; round < 20; round++) {
+            int event_count = 2 + random.nextInt(5);
+            int size = 2000 + random.nextInt(2000);
+            long windows = size * 3L - random.nextInt(size);
+            FunnelAccumulator accumulator = new FunnelAccumulator(windows, event_count);
+            long[] times = new long[size];
+            byte[] events = new byte[size];
+            for (int i = 0; i < size; i++) {
+                times[i] = random.nextInt(size * 3);
+                events[i] = random.nextInt(20) == 0 ? 0 : (byte) (1 + random.nextInt(event_count - 1));
+                accumulator.add(times[i], events[i]);
+            }
+            assertEquals("round " + round, oracle(times, events, windows, event_count), accumulator.finish());
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        Random random = new Random(3);
+        for (int round = 0; round < 12; round++) {
+            int event_count = 2 + random.nextInt(5);
+            int size = 200000 + random.nextInt(300000);
+            // 窗口从很窄到覆盖全部事件
+            long windows = 1 + random.nextInt(round % 3 == 0 ? 50 : round % 3 == 1 ? 5000 : size * 3);
+            FunnelAccumulator accumulator = new FunnelAccumulator(windows, event_count);
+            for (int i = 0; i < size; i++) {
+                // 第一个事件较少，链不会很快走完
+                byte event = random.nextInt(20) == 0 ? 0 : (byte) (1 + random.nextInt(event_count - 1));
+                accumulator.add(random.nextInt(size * 3), event);
+            }
+            assertEquals("round " + round, accumulator.finish(Integer.MAX_VALUE), accumulator.finish(1));
+        }
+    }
+
+    /**
+     * 暴力计算: 按 (时间, 事件索引) 排序后，从每个第一个事件出发，在窗口内按顺序贪心匹配下一步，取最大深度
+     */
+    static int oracle(long[] times, byte[] events, long windows, int event_count) {
+        long[] sorted = new long[times.length];
+        for (int i = 0; i < times.length; i++) {
+            sorted[i] = FunnelAccumulator.pack(times[i], events[i]);
+        }
+        Arrays.sort(sorted);
+        int depth = 0;
+        for (int start = 0; start < sorted.length; start++) {
+            if (FunnelAccumulator.unpackEvent(sorted[start]) != 0) {
+                continue;
+            }
+            long start_time = FunnelAccumulator.unpackTime(sorted[start]);
+            int step = 1;
+            for (int i = start + 1; i < sorted.length && step < event_count; i++) {
+                if (FunnelAccumulator.unpackTime(sorted[i]) - start_time > windows) {
+                    break;
+                }
+                if (FunnelAccumulator.unpackEvent(sorted[i]) == step) {
+                    step++;
+                }
+            }
+            depth = Math.max(depth, step);
+        }
+        return depth;
+    }
+}
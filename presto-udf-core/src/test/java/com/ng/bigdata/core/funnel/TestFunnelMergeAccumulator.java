@@ -0,0 +1,27 @@
+package com.ng.bigdata.core.funnel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/22 14:10
+ * @Desc: FunnelMergeAccumulator 的计数和合并
+ */
+public class TestFunnelMergeAccumulator {
+    @Test
+    public void testAddAndMerge() {
+        FunnelMergeAccumulator left = new FunnelMergeAccumulator(3);
+        left.add(0);
+        left.add(1);
+        left.add(3);
+        // 深度超过事件个数时按事件个数计
+        left.add(5);
+        assertArrayEquals(new long[] {3, 2, 2}, left.finish());
+
+        FunnelMergeAccumulator right = new FunnelMergeAccumulator(new long[] {4, 2, 1});
+        left.merge(right);
+        assertArrayEquals(new long[] {7, 4, 3}, left.finish());
+    }
+}
@@ -0,0 +1,159 @@
+package com.ng.bigdata.core.path;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/23 10:00
+ * @Desc: PathAccumulator 的字典映射、路径顺序与暴力计算的结果对比
+ */
+public class TestPathAccumulator {
+    @Test
+    public void testNoStartEvent() {
+        PathAccumulator<String> accumulator = new PathAccumulator<>(3, "AppStart", String::length);
+        accumulator.add(10, accumulator.define("AppClick"));
+        assertNull(accumulator.finish());
+    }
+
+    @Test
+    public void testFirstStartEvent() {
+        PathAccumulator<String> accumulator = new PathAccumulator<>(3, "AppStart", String::length);
+        int start = accumulator.define("AppStart");
+        int click = accumulator.define("AppClick");
+        int view = accumulator.define("AppView");
+        accumulator.add(50, click);
+        accumulator.add(20, start);
+        // 第一次起始事件之前的事件不在路径中
+        accumulator.add(5, view);
+        accumulator.add(10, start);
+        accumulator.add(40, view);
+        assertArrayEquals(new int[] {start, start, view}, accumulator.finish());
+    }
+
+    @Test
+    public void testTieOrder() {
+        // tip 时间相同按在状态中的位置排序，与起始事件时间相同但在它之前的事件不在路径中
+        PathAccumulator<String> accumulator = new PathAccumulator<>(4, "AppStart", String::length);
+        int start = accumulator.define("AppStart");
+        int click = accumulator.define("AppClick");
+        int view = accumulator.define("AppView");
+        accumulator.add(10, view);
+        accumulator.add(10, start);
+        accumulator.add(20, click);
+        accumulator.add(10, click);
+        accumulator.add(20, view);
+        assertArrayEquals(new int[] {start, click, click, view}, accumulator.finish());
+    }
+
+    @Test
+    public void testMaxDepthOne() {
+        PathAccumulator<String> accumulator = new PathAccumulator<>(1, "AppStart", String::length);
+        int start = accumulator.define("AppStart");
+        accumulator.add(10, start);
+        accumulator.add(20, accumulator.define("AppClick"));
+        assertArrayEquals(new int[] {start}, accumulator.finish());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxDepth() {
+        new PathAccumulator<>(0, "AppStart", String::length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxDepthTooLarge() {
+        new PathAccumulator<>(PathAccumulator.MAX_DEPTH + 1, "AppStart", String::length);
+    }
+
+    @Test
+    public void testMergeRemapsDictionary() {
+        PathAccumulator<String> left = new PathAccumulator<>(4, "AppStart", String::length);
+        left.add(30, left.define("AppClick"));
+        left.add(10, left.define("AppStart"));
+
+        // 右边的字典顺序不同，并且有左边没有的事件
+        PathAccumulator<String> right = new PathAccumulator<>(4, "AppStart", String::length);
+        right.add(40, right.define("AppView"));
+        right.add(20, right.define("AppStart"));
+        right.add(50, right.define("AppClick"));
+
+        left.merge(right);
+        assertEquals(5, left.size());
+        assertEquals(3, left.dictionarySize());
+        assertEquals("AppView", left.getName(2));
+        assertEquals(2, left.lookup("AppView"));
+        assertEquals(-1, left.lookup("AppShare"));
+        assertEquals("AppStart,AppStart,AppClick,AppView", names(left, left.finish()));
+    }
+
+    @Test
+    public void testRandomAgainstOracle() {
+        Random random = new Random(5);
+        String[] vocabulary = {"AppStart", "AppClick", "AppView", "AppShare", "AppEnd"};
+        for (int round = 0; round < 2000; round++) {
+            int max_depth = 1 + random.nextInt(6);
+            int size = random.nextInt(30);
+            long[] times = new long[size];
+            String[] events = new String[size];
+            // 分成两个状态再合并，两边的字典顺序不同
+            PathAccumulator<String> left = new PathAccumulator<>(max_depth, "AppStart", String::length);
+            PathAccumulator<String> right = new PathAccumulator<>(max_depth, "AppStart", String::length);
+            int split = size == 0 ? 0 : random.nextInt(size + 1);
+            for (int i = 0; i < size; i++) {
+                times[i] = random.nextInt(20);
+                events[i] = vocabulary[random.nextInt(vocabulary.length)];
+                PathAccumulator<String> target = i < split ? left : right;
+                int event = target.lookup(events[i]);
+                target.add(times[i], event < 0 ? target.define(events[i]) : event);
+            }
+            left.merge(right);
+            int[] path = left.finish();
+            assertEquals("round " + round, oracle(times, events, max_depth), path == null ? null : names(left, path));
+        }
+    }
+
+    /**
+     * 暴力计算: 第一次起始事件(时间最早，相同取位置最前)之后的事件按 (时间, 位置) 稳定排序，取前 max_depth - 1 个
+     */
+    static String oracle(long[] times, String[] events, int max_depth) {
+        int start = -1;
+        for (int i = 0; i < times.length; i++) {
+            if (events[i].equals("AppStart") && (start < 0 || times[i] < times[start])) {
+                start = i;
+            }
+        }
+        if (start < 0) {
+            return null;
+        }
+        List<Integer> after = new ArrayList<>();
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] > times[start] || (times[i] == times[start] && i > start)) {
+                after.add(i);
+            }
+        }
+        after.sort((a, b) -> times[a] != times[b] ? Long.compare(times[a], times[b]) : Integer.compare(a, b));
+        StringBuilder path = new StringBuilder("AppStart");
+        for (int i = 0; i < after.size() && i < max_depth - 1; i++) {
+            path.append(',').append(events[after.get(i)]);
+        }
+        return path.toString();
+    }
+
+    private static String names(PathAccumulator<String> accumulator, int[] path) {
+        StringBuilder names = new StringBuilder();
+        for (int event : path) {
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(accumulator.getName(event));
+        }
+        return names.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package com.ng.bigdata.core.retention;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/22 14:20
+ * @Desc: RetentionAccumulator 的位图格式和合并
+ */
+public class TestRetentionAccumulator {
+    @Test
+    public void testStartBits() {
+        RetentionAccumulator accumulator = new RetentionAccumulator();
+        accumulator.addStart(0, 3);
+        accumulator.addStart(2, 3);
+        // 超出起始范围的忽略
+        accumulator.addStart(3, 3);
+        accumulator.addStart(-1, 3);
+        assertEquals(0b101, accumulator.getFirst());
+        assertEquals(0, accumulator.getSecond());
+    }
+
+    @Test
+    public void testStartLimit() {
+        RetentionAccumulator accumulator = new RetentionAccumulator();
+        accumulator.addStart(RetentionAccumulator.MAX_COUNT_SHORT - 1, 20);
+        accumulator.addStart(RetentionAccumulator.MAX_COUNT_SHORT, 20);
+        assertEquals(1 << (RetentionAccumulator.MAX_COUNT_SHORT - 1), accumulator.getFirst());
+    }
+
+    @Test
+    public void testEndBits() {
+        RetentionAccumulator accumulator = new RetentionAccumulator();
+        // 结束事件从起始日的下一天开始，第 offset 天对应第 offset-1 位
+        accumulator.addEnd(0, 2, 3);
+        accumulator.addEnd(1, 2, 3);
+        accumulator.addEnd(4, 2, 3);
+        // first_length + second_length - 1 = 4 位之外的忽略
+        accumulator.addEnd(5, 2, 3);
+        assertEquals(0b1001, accumulator.getSecond());
+        assertEquals(0, accumulator.getFirst());
+    }
+
+    @Test
+    public void testEndLimit() {
+        RetentionAccumulator accumulator = new RetentionAccumulator();
+        accumulator.addEnd(RetentionAccumulator.MAX_COUNT_LONG, 15, 60);
+        accumulator.addEnd(RetentionAccumulator.MAX_COUNT_LONG + 1, 15, 60);
+        assertEquals(1L << (RetentionAccumulator.MAX_COUNT_LONG - 1), accumulator.getSecond());
+    }
+
+    @Test
+    public void testMerge() {
+        RetentionAccumulator left = new RetentionAccumulator((short) 0b01, 0b0110);
+        RetentionAccumulator right = new RetentionAccumulator((short) 0b10, 0b1100);
+        left.merge(right);
+        assertArrayEquals(new long[] {0b11, 0b1110}, left.finish());
+    }
+}
@@ -0,0 +1,132 @@
+package com.ng.bigdata.core.retention;
+
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/23 14:00
+ * @Desc: RetentionBuckets 的周/月对齐、夏令时和范围外的取值，并与 java.time 逐个计算的结果对比
+ */
+public class TestRetentionBuckets {
+    private static final ZoneId SHANGHAI = ZoneId.of("Asia/Shanghai");
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    @Test
+    public void testDay() {
+        RetentionBuckets buckets = RetentionBuckets.of("2020-09-23", "Asia/Shanghai", RetentionBuckets.DAY, 7);
+        assertEquals(7, buckets.length());
+        assertEquals(0, buckets.offset(millis("2020-09-23T00:00", SHANGHAI)));
+        assertEquals(0, buckets.offset(millis("2020-09-23T23:59:59.999", SHANGHAI)));
+        assertEquals(1, buckets.offset(millis("2020-09-24T00:00", SHANGHAI)));
+        assertEquals(6, buckets.offset(millis("2020-09-29T12:00", SHANGHAI)));
+    }
+
+    @Test
+    public void testOutOfRange() {
+        RetentionBuckets buckets = RetentionBuckets.of("2020-09-23", "Asia/Shanghai", RetentionBuckets.DAY, 7);
+        // 早于起始时间为-1，范围结束时间及之后为 length
+        assertEquals(-1, buckets.offset(millis("2020-09-22T23:59:59.999", SHANGHAI)));
+        assertEquals(-1, buckets.offset(Long.MIN_VALUE));
+        assertEquals(7, buckets.offset(millis("2020-09-30T00:00", SHANGHAI)));
+        assertEquals(7, buckets.offset(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testWeekStartsOnMonday() {
+        // 2020-09-23 是周三，向前取整到 2020-09-21 周一
+        RetentionBuckets buckets = RetentionBuckets.of("2020-09-23", "Asia/Shanghai", RetentionBuckets.WEEK, 4);
+        assertEquals(-1, buckets.offset(millis("2020-09-20T23:59:59.999", SHANGHAI)));
+        assertEquals(0, buckets.offset(millis("2020-09-21T00:00", SHANGHAI)));
+        assertEquals(0, buckets.offset(millis("2020-09-27T23:59", SHANGHAI)));
+        assertEquals(1, buckets.offset(millis("2020-09-28T00:00", SHANGHAI)));
+        assertEquals(3, buckets.offset(millis("2020-10-18T23:59", SHANGHAI)));
+        assertEquals(4, buckets.offset(millis("2020-10-19T00:00", SHANGHAI)));
+    }
+
+    @Test
+    public void testMonth() {
+        // 起始日期向前取整到1号，每个月天数不同，走二分查找
+        RetentionBuckets buckets = RetentionBuckets.of("2020-01-15", "Asia/Shanghai", RetentionBuckets.MONTH, 3);
+        assertEquals(-1, buckets.offset(millis("2019-12-31T23:59", SHANGHAI)));
+        assertEquals(0, buckets.offset(millis("2020-01-01T00:00", SHANGHAI)));
+        assertEquals(0, buckets.offset(millis("2020-01-31T23:59", SHANGHAI)));
+        assertEquals(1, buckets.offset(millis("2020-02-29T12:00", SHANGHAI)));
+        assertEquals(2, buckets.offset(millis("2020-03-01T00:00", SHANGHAI)));
+        assertEquals(3, buckets.offset(millis("2020-04-01T00:00", SHANGHAI)));
+    }
+
+    @Test
+    public void testDaylightSaving() {
+        // tip 2020-03-08 纽约切换到夏令时，这一天只有23小时，每天长度不同，走二分查找
+        RetentionBuckets buckets = RetentionBuckets.of("2020-03-07", "America/New_York", RetentionBuckets.DAY, 3);
+        assertEquals(0, buckets.offset(millis("2020-03-07T23:59", NEW_YORK)));
+        assertEquals(1, buckets.offset(millis("2020-03-08T00:00", NEW_YORK)));
+        assertEquals(1, buckets.offset(millis("2020-03-08T23:59", NEW_YORK)));
+        assertEquals(2, buckets.offset(millis("2020-03-09T00:00", NEW_YORK)));
+        assertEquals(2, buckets.offset(millis("2020-03-09T23:59", NEW_YORK)));
+        assertEquals(3, buckets.offset(millis("2020-03-10T00:00", NEW_YORK)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGranularity() {
+        RetentionBuckets.of("2020-09-23", "Asia/Shanghai", "year", 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLength() {
+        RetentionBuckets.of("2020-09-23", "Asia/Shanghai", RetentionBuckets.DAY, 0);
+    }
+
+    @Test
+    public void testRandomAgainstJavaTime() {
+        Random random = new Random(7);
+        String[] zones = {"Asia/Shanghai", "America/New_York", "Europe/London", "Australia/Sydney", "UTC"};
+        String[] granularities = {RetentionBuckets.DAY, RetentionBuckets.WEEK, RetentionBuckets.MONTH};
+        for (int round = 0; round < 200; round++) {
+            ZoneId zone = ZoneId.of(zones[random.nextInt(zones.length)]);
+            String granularity = granularities[random.nextInt(granularities.length)];
+            LocalDate start = LocalDate.of(2018, 1, 1).plusDays(random.nextInt(1000));
+            int length = 1 + random.nextInt(30);
+            RetentionBuckets buckets = RetentionBuckets.of(start.toString(), zone.getId(), granularity, length);
+            long from = start.minusMonths(2).atStartOfDay(zone).toInstant().toEpochMilli();
+            long to = start.plusMonths(length + 2).atStartOfDay(zone).toInstant().toEpochMilli();
+            for (int i = 0; i < 100; i++) {
+                long time = from + (long) (random.nextDouble() * (to - from));
+                assertEquals("round " + round + " " + time, expected(start, zone, granularity, length, time), buckets.offset(time));
+            }
+        }
+    }
+
+    /**
+     * 逐个事件用 java.time 计算: 事件所在的日期与起始日期(周取整到周一，月取整到1号)的差值，再截断到 [-1, length]
+     */
+    static long expected(LocalDate start, ZoneId zone, String granularity, int length, long time) {
+        LocalDate date = ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), zone).toLocalDate();
+        long offset;
+        if (RetentionBuckets.WEEK.equals(granularity)) {
+            LocalDate monday = start.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            offset = Math.floorDiv(ChronoUnit.DAYS.between(monday, date), 7);
+        } else if (RetentionBuckets.MONTH.equals(granularity)) {
+            offset = ChronoUnit.MONTHS.between(start.withDayOfMonth(1), date.withDayOfMonth(1));
+        } else {
+            offset = ChronoUnit.DAYS.between(start, date);
+        }
+        return Math.max(-1, Math.min(offset, length));
+    }
+
+    private static long millis(String localDateTime, ZoneId zone) {
+        return LocalDateTime.parse(localDateTime).atZone(zone).toInstant().toEpochMilli();
+    }
+}
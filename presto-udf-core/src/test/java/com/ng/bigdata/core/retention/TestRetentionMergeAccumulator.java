@@ -0,0 +1,89 @@
+package com.ng.bigdata.core.retention;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/22 14:30
+ * @Desc: RetentionMergeAccumulator 的结果格式和合并
+ */
+public class TestRetentionMergeAccumulator {
+    @Test
+    public void testLayout() {
+        RetentionMergeAccumulator accumulator = new RetentionMergeAccumulator(2, 3);
+        // 第0天起始，第1、3天留存
+        accumulator.add(0b01, 0b101);
+        // 第0、1天起始，第2、3、4天留存
+        accumulator.add(0b11, 0b1110);
+        // 起始范围之外的位忽略
+        accumulator.add(0b100, 0b1111);
+        assertArrayEquals(new long[] {
+                1, 1, 2,
+                1, 1, 1,
+                2, 1}, accumulator.finish());
+    }
+
+    @Test
+    public void testRolling() {
+        RetentionMergeAccumulator accumulator = new RetentionMergeAccumulator(2, 3);
+        // 第0、1天起始，第2、4天留存
+        accumulator.add(0b11, 0);
+        accumulator.addRolling(0b11, 0b1010);
+        // 没有留存
+        accumulator.addRolling(0b01, 0);
+        // 最后一个留存位
+        RetentionMergeAccumulator last = new RetentionMergeAccumulator(15, 49);
+        last.addRolling(1 << 14, 1L << 62);
+        assertArrayEquals(new long[] {
+                0, 1, 1,
+                1, 1, 1,
+                3, 2}, accumulator.finish());
+        long[] counts = last.finish();
+        assertArrayEquals(new long[] {0, 1}, new long[] {counts[14 * 49 + 47], counts[14 * 49 + 48]});
+    }
+
+    @Test
+    public void testRollingMatchesExactDays() {
+        Random random = new Random(4);
+        for (int round = 0; round < 1000; round++) {
+            int first_length = 1 + random.nextInt(RetentionAccumulator.MAX_COUNT_SHORT);
+            int second_length = 1 + random.nextInt(RetentionAccumulator.MAX_COUNT_LONG + 1 - first_length);
+            long first = random.nextLong();
+            long second = random.nextLong() & random.nextLong() & Long.MAX_VALUE;
+            RetentionMergeAccumulator exact = new RetentionMergeAccumulator(first_length, second_length);
+            RetentionMergeAccumulator rolling = new RetentionMergeAccumulator(first_length, second_length);
+            exact.add(first, second);
+            rolling.addRolling(first, second);
+            long[] exact_counts = exact.finish();
+            long[] rolling_counts = rolling.finish();
+            // 单个用户: j 天内留存 = 1~j 天中任意一天当天留存
+            for (int i = 0; i < first_length; i++) {
+                long retained = 0;
+                for (int j = 0; j < second_length; j++) {
+                    retained |= exact_counts[i * second_length + j];
+                    assertEquals(retained, rolling_counts[i * second_length + j]);
+                }
+                assertEquals(exact_counts[first_length * second_length + i], rolling_counts[first_length * second_length + i]);
+            }
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        RetentionMergeAccumulator left = new RetentionMergeAccumulator(2, 2);
+        left.add(0b01, 0b01);
+        RetentionMergeAccumulator right = new RetentionMergeAccumulator(2, 2);
+        right.add(0b10, 0b10);
+        right.add(0b01, 0b10);
+        left.merge(right);
+        assertArrayEquals(new long[] {
+                1, 1,
+                1, 0,
+                2, 1}, left.finish());
+    }
+}
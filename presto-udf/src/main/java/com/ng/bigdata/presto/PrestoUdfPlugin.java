@@ -0,0 +1,51 @@
+package com.ng.bigdata.presto;
+
+
+import com.facebook.presto.spi.Plugin;
+import com.google.common.collect.ImmutableSet;
+import com.ng.bigdata.presto.aggregation.DoubleSumAggregation;
+import com.ng.bigdata.presto.aggregation.funnel.Funnel;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelMerge;
+import com.ng.bigdata.presto.aggregation.funnel.MultiWindowFunnel;
+import com.ng.bigdata.presto.aggregation.funnel.MultiWindowFunnelMerge;
+import com.ng.bigdata.presto.aggregation.path.PathTransitions;
+import com.ng.bigdata.presto.aggregation.path.PathTransitionsMerge;
+import com.ng.bigdata.presto.aggregation.retention.Retention;
+import com.ng.bigdata.presto.aggregation.retention.RetentionMerge;
+import com.ng.bigdata.presto.aggregation.retention.RollingRetentionMerge;
+import com.ng.bigdata.presto.aggregation.retention.TimeBucketRetention;
+import com.ng.bigdata.presto.aggregation.session.Sessionize;
+import com.ng.bigdata.presto.aggregation.session.SessionizeMerge;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import com.ng.bigdata.presto.scalar.ScalarFunctions;
+
+import java.util.Set;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/9 19:00
+ * @Desc:
+ */
+public class PrestoUdfPlugin implements Plugin {
+    @Override
+    public Set<Class<?>> getFunctions() {
+        // 插件加载时注册 JMX 指标, 见 UdfMetrics
+        UdfMetrics.register();
+        return ImmutableSet.<Class<?>>builder()
+                .add(ScalarFunctions.class)
+                .add(DoubleSumAggregation.class)
+                .add(Funnel.class)
+                .add(FunnelMerge.class)
+                .add(MultiWindowFunnel.class)
+                .add(MultiWindowFunnelMerge.class)
+                .add(Retention.class)
+                .add(TimeBucketRetention.class)
+                .add(RetentionMerge.class)
+                .add(RollingRetentionMerge.class)
+                .add(Sessionize.class)
+                .add(SessionizeMerge.class)
+                .add(PathTransitions.class)
+                .add(PathTransitionsMerge.class)
+                .build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.ng.bigdata.presto.aggregation;
+
+import com.facebook.presto.operator.aggregation.state.InitialBooleanValue;
+import com.facebook.presto.spi.function.AccumulatorState;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/12 10:20
+ * @Desc: 补偿求和(Kahan/Neumaier)的状态，保存累加和 sum 与补偿值 compensation
+ * 由 Presto 的 StateCompiler 生成实现，分组状态下每个字段各自对应一个 DoubleBigArray，
+ * 不会为每个分组创建对象
+ */
+public interface CompensatedDoubleState
+        extends AccumulatorState {
+    double getSum();
+
+    void setSum(double value);
+
+    double getCompensation();
+
+    void setCompensation(double value);
+
+    @InitialBooleanValue(true)
+    boolean isNull();
+
+    void setNull(boolean value);
+}
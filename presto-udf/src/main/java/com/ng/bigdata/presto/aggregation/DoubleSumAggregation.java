@@ -0,0 +1,102 @@
+package com.ng.bigdata.presto.aggregation;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.DoubleType;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/9 18:42
+ * @Desc: 聚合函数，Double小数的相加
+ * 使用 Neumaier 补偿求和，避免在数十亿行上直接累加 double 时丢失精度
+ * <p>
+ * eg: select sum_double(revenue) from ods_news.order group by logday
+ */
+
+@AggregationFunction("sum_double")
+@Description("sum of double values using compensated (Kahan/Neumaier) summation")
+public class DoubleSumAggregation {
+    // 状态为 sum、compensation 两个 double 和一个 null 标记
+    private static final long STATE_SIZE = 2 * Double.BYTES + 1;
+    private static final FunctionStats stats = UdfMetrics.function("sum_double");
+
+    private DoubleSumAggregation() {
+    }
+
+    @InputFunction
+    public static void input(@AggregationState CompensatedDoubleState state,
+                             @SqlType(StandardTypes.DOUBLE) double d) {
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        state.setNull(false);
+        add(state, d);
+    }
+
+    /**
+     * 中间聚合，先把另一个状态的 sum 补偿累加进来，再合并两边的补偿值
+     * @param state1
+     * @param state2
+     */
+    @CombineFunction
+    public static void combine(@AggregationState CompensatedDoubleState state1,
+                               @AggregationState CompensatedDoubleState state2) {
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        if (state2.isNull()) {
+            return;
+        }
+        if (state1.isNull()) {
+            state1.setNull(false);
+            state1.setSum(state2.getSum());
+            state1.setCompensation(state2.getCompensation());
+            return;
+        }
+        add(state1, state2.getSum());
+        state1.setCompensation(state1.getCompensation() + state2.getCompensation());
+    }
+
+    /**
+     * 进行结果输出，结果为 sum + compensation
+     * @param state
+     * @param out
+     */
+    @OutputFunction(StandardTypes.DOUBLE)
+    public static void output(@AggregationState CompensatedDoubleState state,
+                              BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        if (state.isNull()) {
+            out.appendNull();
+            if (metrics) {
+                stats.output(0, System.nanoTime() - start);
+            }
+            return;
+        }
+        double sum = state.getSum();
+        // tip 出现 NaN/Infinity 时补偿值已无意义（可能为 NaN），直接输出 sum
+        if (Double.isFinite(sum)) {
+            sum += state.getCompensation();
+        }
+        DoubleType.DOUBLE.writeDouble(out, sum);
+        if (metrics) {
+            stats.output(STATE_SIZE, System.nanoTime() - start);
+        }
+    }
+
+    // Neumaier 算法: 谁的绝对值大，就用谁去抵消 t 中被舍掉的低位
+    private static void add(CompensatedDoubleState state, double value) {
+        double sum = state.getSum();
+        double t = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            state.setCompensation(state.getCompensation() + ((sum - t) + value));
+        } else {
+            state.setCompensation(state.getCompensation() + ((value - t) + sum));
+        }
+        state.setSum(t);
+    }
+}
@@ -0,0 +1,53 @@
+package com.ng.bigdata.presto.aggregation;
+
+import com.facebook.presto.array.ObjectBigArray;
+import com.facebook.presto.spi.function.GroupedAccumulatorState;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:00
+ * @Desc: 以 presto-udf-core 中的累加器对象作为状态的分组实现，每个分组一个累加器，存放在 ObjectBigArray 中
+ * 子类同时实现具体的状态接口，例如 FunnelState
+ */
+public abstract class GroupedAccumulatorObjectState<T>
+        implements GroupedAccumulatorState {
+    private final ObjectBigArray<T> accumulators = new ObjectBigArray<>();
+    private long groupId;
+    private long size;
+
+    @Override
+    public void setGroupId(long groupId) {
+        this.groupId = groupId;
+    }
+
+    @Override
+    public void ensureCapacity(long size) {
+        accumulators.ensureCapacity(size);
+    }
+
+    public T getAccumulator() {
+        return accumulators.get(groupId);
+    }
+
+    public void setAccumulator(T value) {
+        T previous = getAccumulator();
+        if (previous != null) {
+            size -= sizeOf(previous);
+        }
+        accumulators.set(groupId, value);
+        if (value != null) {
+            size += sizeOf(value);
+        }
+    }
+
+    public void addMemoryUsage(long value) {
+        size += value;
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return size + accumulators.sizeOf();
+    }
+
+    protected abstract long sizeOf(T value);
+}
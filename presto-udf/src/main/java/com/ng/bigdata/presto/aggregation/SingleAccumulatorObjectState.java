@@ -0,0 +1,31 @@
+package com.ng.bigdata.presto.aggregation;
+
+import com.facebook.presto.spi.function.AccumulatorState;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:00
+ * @Desc: 以 presto-udf-core 中的累加器对象作为状态的非分组实现
+ */
+public abstract class SingleAccumulatorObjectState<T>
+        implements AccumulatorState {
+    private T accumulator;
+
+    public T getAccumulator() {
+        return accumulator;
+    }
+
+    public void setAccumulator(T value) {
+        this.accumulator = value;
+    }
+
+    public void addMemoryUsage(long value) {
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return accumulator == null ? 0 : sizeOf(accumulator);
+    }
+
+    protected abstract long sizeOf(T value);
+}
@@ -0,0 +1,60 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.ng.bigdata.presto.metrics.CacheStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/9 14:19
+ * @Desc: 封装漏斗的基础信息，事件缓存见 presto-udf-core 中的 FunnelAccumulator
+ */
+public class Base {
+    // 缓存的漏斗个数上限，超过时清空重建，避免长期运行的 worker 上无限增长
+    public static final int MAX_CACHED_EVENTS = 1024;
+
+    // todo 漏斗时间和索引关系Map{events：{event:index,....},{...}}
+    public static Map<Slice, Map<Slice, Byte>> event_pos_dict = new ConcurrentHashMap<>();
+
+    private static final CacheStats cache_stats = UdfMetrics.cache("funnel_events");
+
+    // todo 获取漏斗事件和索引的关系，不存在时初始化
+    public static Map<Slice, Byte> get_events(Slice events) {
+        Map<Slice, Byte> pos_dict = event_pos_dict.get(events);
+        if (pos_dict != null) {
+            if (UdfMetrics.enabled()) {
+                cache_stats.hit();
+            }
+            return pos_dict;
+        }
+        if (UdfMetrics.enabled()) {
+            cache_stats.miss();
+        }
+        return init_events(events);
+    }
+
+    // todo 让每一个事件携带一个索引
+    public static Map<Slice, Byte> init_events(Slice events) {
+        List<String> fs = Arrays.asList(new String(events.getBytes()).split(","));
+        Map<Slice, Byte> pos_dict = new HashMap<>();
+        // todo 将所有事件追加至集合
+        for (Byte i = 0; i < fs.size(); i++) {
+            pos_dict.put(Slices.utf8Slice(fs.get(i)), i);
+        }
+
+        if (event_pos_dict.size() >= MAX_CACHED_EVENTS) {
+            cache_stats.evict(event_pos_dict.size());
+            event_pos_dict.clear();
+        }
+        // tip events 可能引用整个输入 Block，拷贝一份作为 key
+        event_pos_dict.put(Slices.copyOf(events), pos_dict);
+        return pos_dict;
+    }
+}
@@ -0,0 +1,111 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.core.funnel.FunnelAccumulator;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+
+import java.util.Map;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/9 14:30
+ * @Desc: 计算漏斗的第一阶段，计算每个用户的有序漏斗深度
+ * 计算漏斗的聚合函数, 步骤一
+ * <p>
+ * 这里以两个事件漏斗举例，可以是多个, 这里的ctime表示事件发生的时间，event表示发生的事件
+ * <p>
+ * eg: 计算20200923日到20200930日7天内,时间窗口为7天，事件为AppPageView,AppClick两个事件的漏斗
+ * <p>
+ * select distinct_id ,funnel(ctime, 7*86400000, event, 'AppPageView,AppClick') as user_state
+ * from ods_news.event
+ * where  event in ('AppPageView','AppClick',) and logday>='20200923' and logday<'20200930'
+ * group by distinct_id
+ */
+@AggregationFunction("funnel")
+public class Funnel extends Base {
+    // todo 状态为 presto-udf-core 中的 FunnelAccumulator，这里只负责事件名到索引的转换和结果输出
+    private static final FunctionStats stats = UdfMetrics.function("funnel");
+
+    @InputFunction
+    public static void input(FunnelState state,
+                             @SqlType(StandardTypes.BIGINT) long eventTime,  // 时间发生时间
+                             @SqlType(StandardTypes.BIGINT) long windows,    // 窗口长度
+                             @SqlType(StandardTypes.VARCHAR) Slice event,    // 时间名称
+                             @SqlType(StandardTypes.VARCHAR) Slice events) {    // 漏斗全部事件，逗号分隔
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        // todo 获取漏斗事件，不存在时初始化
+        Map<Slice, Byte> pos_dict = get_events(events);
+        FunnelAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            accumulator = new FunnelAccumulator(windows, pos_dict.size());
+            state.setAccumulator(accumulator);
+        }
+        // todo 追加事件
+        long size = accumulator.estimatedSize();
+        accumulator.add(eventTime, pos_dict.get(event));
+        state.addMemoryUsage(accumulator.estimatedSize() - size);
+    }
+
+    /**
+     * 合并中间聚合的状态，两个状态的事件直接拼接
+     *
+     * @param state1
+     * @param state2
+     */
+    @CombineFunction
+    public static void combine(FunnelState state1, FunnelState state2) {
+        FunnelAccumulator accumulator = state1.getAccumulator();
+        FunnelAccumulator other = state2.getAccumulator();
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        if (other == null) {
+            return;
+        }
+        if (accumulator == null) {
+            state1.setAccumulator(other);
+        } else {
+            long size = accumulator.estimatedSize();
+            accumulator.merge(other);
+            state1.addMemoryUsage(accumulator.estimatedSize() - size);
+        }
+    }
+
+    /**
+     * 计算该条数据的深度，将最后结果输出
+     *
+     * @param state
+     * @param out
+     */
+    @OutputFunction(StandardTypes.INTEGER)
+    public static void output(FunnelState state, BlockBuilder out) {
+        // tip 只读一次开关，避免中途打开时记录 nanoTime - 0
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        FunnelAccumulator accumulator = state.getAccumulator();
+        // todo 判断数据是否为空，若为空返回0
+        out.writeInt(accumulator == null ? 0 : accumulator.finish());
+        out.closeEntry();
+        if (metrics) {
+            stats.output(accumulator == null ? 0 : accumulator.estimatedSize(), System.nanoTime() - start);
+        }
+    }
+}
+
+
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,100 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.core.funnel.FunnelMergeAccumulator;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/9 18:40
+ * @Desc: 计算漏斗的第二阶段，Merge函数. 根据funnel函数的结果，计算最终漏斗结果
+ * 这里以两个事件漏斗举例，可以是多个 这里的ctime表示事件发生的视觉，event表示发生的事件
+ * eg:
+ * select funnel_merge(user_state,2) from
+ * (select distinct_id ,funnel(ctime, 7*86400000, event, 'AppPageView,AppClick') as user_state
+ * from ods_news.event
+ * where  event in ('AppPageView','AppClick',) and logday>='20200601' and logday<'20200621'
+ * group by distinct_id
+ * )
+ * result样例: [3000,2500], 代表这个两步漏斗第一个事件[AppPageView]人数是3000人，这3000人漏到第二个事件[AppClick]人数是 2500人
+ */
+@AggregationFunction("funnel_merge")
+public class FunnelMerge {
+    private static final FunctionStats stats = UdfMetrics.function("funnel_merge");
+
+    @InputFunction
+    public static void input(FunnelMergeState state,
+                             @SqlType(StandardTypes.INTEGER) long userState,
+                             @SqlType(StandardTypes.INTEGER) long events_count){
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        // todo 初始化state，长度[events num]
+        FunnelMergeAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            accumulator = new FunnelMergeAccumulator((int) events_count);
+            state.setAccumulator(accumulator);
+        }
+        // todo 按照用户的深度计算设置相应事件位置的值
+        accumulator.add((int) userState);
+    }
+
+    @CombineFunction
+    public static void combine(FunnelMergeState state1, FunnelMergeState state2) {
+        FunnelMergeAccumulator accumulator = state1.getAccumulator();
+        FunnelMergeAccumulator other = state2.getAccumulator();
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        if (other == null) {
+            return;
+        }
+        if (accumulator == null) {
+            state1.setAccumulator(other);
+        } else {
+            accumulator.merge(other);
+        }
+    }
+
+    @OutputFunction("array<bigint>")
+    public static void output(FunnelMergeState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        FunnelMergeAccumulator accumulator = state.getAccumulator();
+        // todo 结果含义: [EVENT-A:3000, EVENT-A:2500, EVENT-A:1000, ......]
+        // todo 最终输出结果 [3000,2500,1000]，数据为空时返回一个空数组
+        BlockBuilder blockBuilder = out.beginBlockEntry();
+        if (accumulator != null) {
+            for (long count : accumulator.finish()) {
+                BigintType.BIGINT.writeLong(blockBuilder, count);
+            }
+        }
+        out.closeEntry();
+        if (metrics) {
+            stats.output(accumulator == null ? 0 : accumulator.estimatedSize(), System.nanoTime() - start);
+        }
+    }
+
+}
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,20 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.spi.function.AccumulatorState;
+import com.facebook.presto.spi.function.AccumulatorStateMetadata;
+import com.ng.bigdata.core.funnel.FunnelMergeAccumulator;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:30
+ * @Desc: 漏斗第二阶段的状态，保存 FunnelMergeAccumulator
+ */
+@AccumulatorStateMetadata(stateSerializerClass = FunnelMergeStateSerializer.class, stateFactoryClass = FunnelMergeStateFactory.class)
+public interface FunnelMergeState
+        extends AccumulatorState {
+    FunnelMergeAccumulator getAccumulator();
+
+    void setAccumulator(FunnelMergeAccumulator value);
+
+    void addMemoryUsage(long value);
+}
@@ -0,0 +1,52 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.spi.function.AccumulatorStateFactory;
+import com.ng.bigdata.presto.aggregation.GroupedAccumulatorObjectState;
+import com.ng.bigdata.presto.aggregation.SingleAccumulatorObjectState;
+import com.ng.bigdata.core.funnel.FunnelMergeAccumulator;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:30
+ * @Desc: FunnelMergeState 的单状态和分组状态实现
+ */
+public class FunnelMergeStateFactory
+        implements AccumulatorStateFactory<FunnelMergeState> {
+    @Override
+    public FunnelMergeState createSingleState() {
+        return new SingleState();
+    }
+
+    @Override
+    public Class<? extends FunnelMergeState> getSingleStateClass() {
+        return SingleState.class;
+    }
+
+    @Override
+    public FunnelMergeState createGroupedState() {
+        return new GroupedState();
+    }
+
+    @Override
+    public Class<? extends FunnelMergeState> getGroupedStateClass() {
+        return GroupedState.class;
+    }
+
+    public static class GroupedState
+            extends GroupedAccumulatorObjectState<FunnelMergeAccumulator>
+            implements FunnelMergeState {
+        @Override
+        protected long sizeOf(FunnelMergeAccumulator value) {
+            return value.estimatedSize();
+        }
+    }
+
+    public static class SingleState
+            extends SingleAccumulatorObjectState<FunnelMergeAccumulator>
+            implements FunnelMergeState {
+        @Override
+        protected long sizeOf(FunnelMergeAccumulator value) {
+            return value.estimatedSize();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.function.AccumulatorStateSerializer;
+import com.ng.bigdata.core.funnel.FunnelMergeAccumulator;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:35
+ * @Desc: FunnelMergeAccumulator 序列化为 varbinary，格式: 每一步的用户数[8Byte]...
+ */
+public class FunnelMergeStateSerializer
+        implements AccumulatorStateSerializer<FunnelMergeState> {
+    @Override
+    public Type getSerializedType() {
+        return VARBINARY;
+    }
+
+    @Override
+    public void serialize(FunnelMergeState state, BlockBuilder out) {
+        FunnelMergeAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            out.appendNull();
+            return;
+        }
+        // tip wrappedLongArray 不拷贝数组，只在写入 BlockBuilder 时拷贝一次
+        VARBINARY.writeSlice(out, Slices.wrappedLongArray(accumulator.finish()));
+    }
+
+    @Override
+    public void deserialize(Block block, int index, FunnelMergeState state) {
+        if (block.isNull(index)) {
+            state.setAccumulator(null);
+            return;
+        }
+        Slice slice = VARBINARY.getSlice(block, index);
+        long[] counts = new long[slice.length() / 8];
+        slice.getBytes(0, Slices.wrappedLongArray(counts), 0, counts.length * 8);
+        state.setAccumulator(new FunnelMergeAccumulator(counts));
+    }
+}
@@ -0,0 +1,20 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.spi.function.AccumulatorState;
+import com.facebook.presto.spi.function.AccumulatorStateMetadata;
+import com.ng.bigdata.core.funnel.FunnelAccumulator;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:20
+ * @Desc: 漏斗第一阶段的状态，保存每个用户的 FunnelAccumulator
+ */
+@AccumulatorStateMetadata(stateSerializerClass = FunnelStateSerializer.class, stateFactoryClass = FunnelStateFactory.class)
+public interface FunnelState
+        extends AccumulatorState {
+    FunnelAccumulator getAccumulator();
+
+    void setAccumulator(FunnelAccumulator value);
+
+    void addMemoryUsage(long value);
+}
@@ -0,0 +1,52 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.spi.function.AccumulatorStateFactory;
+import com.ng.bigdata.presto.aggregation.GroupedAccumulatorObjectState;
+import com.ng.bigdata.presto.aggregation.SingleAccumulatorObjectState;
+import com.ng.bigdata.core.funnel.FunnelAccumulator;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:20
+ * @Desc: FunnelState 的单状态和分组状态实现
+ */
+public class FunnelStateFactory
+        implements AccumulatorStateFactory<FunnelState> {
+    @Override
+    public FunnelState createSingleState() {
+        return new SingleState();
+    }
+
+    @Override
+    public Class<? extends FunnelState> getSingleStateClass() {
+        return SingleState.class;
+    }
+
+    @Override
+    public FunnelState createGroupedState() {
+        return new GroupedState();
+    }
+
+    @Override
+    public Class<? extends FunnelState> getGroupedStateClass() {
+        return GroupedState.class;
+    }
+
+    public static class GroupedState
+            extends GroupedAccumulatorObjectState<FunnelAccumulator>
+            implements FunnelState {
+        @Override
+        protected long sizeOf(FunnelAccumulator value) {
+            return value.estimatedSize();
+        }
+    }
+
+    public static class SingleState
+            extends SingleAccumulatorObjectState<FunnelAccumulator>
+            implements FunnelState {
+        @Override
+        protected long sizeOf(FunnelAccumulator value) {
+            return value.estimatedSize();
+        }
+    }
+}
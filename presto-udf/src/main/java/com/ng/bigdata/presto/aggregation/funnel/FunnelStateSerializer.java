@@ -0,0 +1,74 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.function.AccumulatorStateSerializer;
+import com.ng.bigdata.core.funnel.FunnelAccumulator;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:25
+ * @Desc: FunnelAccumulator 序列化为 varbinary
+ * 格式: 窗口大小[8Byte]，事件个数[4Byte]，缓存的事件数n[4Byte]，事件时间[8Byte]*n，事件索引[1Byte]*n
+ * 多个窗口时在最后追加窗口列表: 窗口个数m[4Byte]，窗口大小[8Byte]*m
+ */
+public class FunnelStateSerializer
+        implements AccumulatorStateSerializer<FunnelState> {
+    private static final int COUNT_FLAG_LENGTH = 16;
+
+    @Override
+    public Type getSerializedType() {
+        return VARBINARY;
+    }
+
+    @Override
+    public void serialize(FunnelState state, BlockBuilder out) {
+        FunnelAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            out.appendNull();
+            return;
+        }
+        // tip 直接写入 BlockBuilder，不先分配一个中间的 Slice 再整体拷贝一次
+        int size = accumulator.size();
+        long[] window_list = accumulator.getWindowList();
+        out.writeLong(accumulator.getWindows());
+        out.writeInt(accumulator.getEventCount());
+        out.writeInt(size);
+        out.writeBytes(Slices.wrappedLongArray(accumulator.getTimes(), 0, size), 0, size * 8);
+        out.writeBytes(Slices.wrappedBuffer(accumulator.getEvents(), 0, size), 0, size);
+        if (window_list != null) {
+            out.writeInt(window_list.length);
+            out.writeBytes(Slices.wrappedLongArray(window_list), 0, window_list.length * 8);
+        }
+        out.closeEntry();
+    }
+
+    @Override
+    public void deserialize(Block block, int index, FunnelState state) {
+        if (block.isNull(index)) {
+            state.setAccumulator(null);
+            return;
+        }
+        Slice slice = VARBINARY.getSlice(block, index);
+        int event_count = slice.getInt(8);
+        int size = slice.getInt(12);
+        // tip 整段拷贝到累加器的数组，不逐个事件 add
+        long[] times = new long[size];
+        byte[] events = new byte[size];
+        slice.getBytes(COUNT_FLAG_LENGTH, Slices.wrappedLongArray(times), 0, size * 8);
+        slice.getBytes(COUNT_FLAG_LENGTH + size * 8, events, 0, size);
+        int window_offset = COUNT_FLAG_LENGTH + size * 9;
+        if (slice.length() > window_offset) {
+            long[] window_list = new long[slice.getInt(window_offset)];
+            slice.getBytes(window_offset + 4, Slices.wrappedLongArray(window_list), 0, window_list.length * 8);
+            state.setAccumulator(new FunnelAccumulator(window_list, event_count, times, events));
+        } else {
+            state.setAccumulator(new FunnelAccumulator(slice.getLong(0), event_count, times, events));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.IntegerType;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.core.funnel.FunnelAccumulator;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+
+import java.util.Map;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/21 10:00
+ * @Desc: 计算漏斗的第一阶段，一次计算多个时间窗口下每个用户的漏斗深度
+ * 事件只缓存和排序一次，每个窗口分别计算深度，替代每个窗口一次的 funnel 查询
+ * <p>
+ * eg: 计算时间窗口为1天、3天、7天，事件为AppPageView,AppClick两个事件的漏斗
+ * <p>
+ * select distinct_id ,funnel(ctime, array[86400000, 3*86400000, 7*86400000], event, 'AppPageView,AppClick') as user_state
+ * from ods_news.event
+ * where  event in ('AppPageView','AppClick',) and logday>='20200923' and logday<'20200930'
+ * group by distinct_id
+ * <p>
+ * 输出为与窗口一一对应的漏斗深度，如 [1,2,2]，可以直接作为 funnel_merge(user_state, 2) 的输入
+ */
+@AggregationFunction("funnel")
+public class MultiWindowFunnel extends Base {
+    // 与 Funnel 是同一个函数名，指标记在一起
+    private static final FunctionStats stats = UdfMetrics.function("funnel");
+
+    @InputFunction
+    public static void input(FunnelState state,
+                             @SqlType(StandardTypes.BIGINT) long eventTime,     // 时间发生时间
+                             @SqlType("array<bigint>") Block windows,           // 窗口长度列表
+                             @SqlType(StandardTypes.VARCHAR) Slice event,       // 时间名称
+                             @SqlType(StandardTypes.VARCHAR) Slice events) {    // 漏斗全部事件，逗号分隔
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        // todo 获取漏斗事件，不存在时初始化
+        Map<Slice, Byte> pos_dict = get_events(events);
+        FunnelAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            // todo 窗口列表只在第一个事件时读取
+            long[] window_list = new long[windows.getPositionCount()];
+            for (int i = 0; i < window_list.length; i++) {
+                window_list[i] = BigintType.BIGINT.getLong(windows, i);
+            }
+            accumulator = new FunnelAccumulator(window_list, pos_dict.size());
+            state.setAccumulator(accumulator);
+        }
+        // todo 追加事件
+        long size = accumulator.estimatedSize();
+        accumulator.add(eventTime, pos_dict.get(event));
+        state.addMemoryUsage(accumulator.estimatedSize() - size);
+    }
+
+    @CombineFunction
+    public static void combine(FunnelState state1, FunnelState state2) {
+        Funnel.combine(state1, state2);
+    }
+
+    /**
+     * 计算每个窗口下的深度，将最后结果输出
+     *
+     * @param state
+     * @param out
+     */
+    @OutputFunction("array<integer>")
+    public static void output(FunnelState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        FunnelAccumulator accumulator = state.getAccumulator();
+        // todo 数据为空时返回一个空数组
+        BlockBuilder blockBuilder = out.beginBlockEntry();
+        if (accumulator != null) {
+            for (int depth : accumulator.finishWindows()) {
+                IntegerType.INTEGER.writeLong(blockBuilder, depth);
+            }
+        }
+        out.closeEntry();
+        if (metrics) {
+            stats.output(accumulator == null ? 0 : accumulator.estimatedSize(), System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ng.bigdata.presto.aggregation.funnel;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.IntegerType;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.core.funnel.FunnelMergeAccumulator;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/21 10:30
+ * @Desc: 计算漏斗的第二阶段，以多窗口 funnel 的结果为输入，一次得到每个窗口的漏斗
+ * eg:
+ * select funnel_merge(user_state,2) from
+ * (select distinct_id ,funnel(ctime, array[86400000, 7*86400000], event, 'AppPageView,AppClick') as user_state
+ * from ods_news.event
+ * where  event in ('AppPageView','AppClick',) and logday>='20200601' and logday<'20200621'
+ * group by distinct_id
+ * )
+ * result样例: [3000,1800, 3000,2500], 前2个值为1天窗口的漏斗，后2个值为7天窗口的漏斗，依次类推
+ */
+@AggregationFunction("funnel_merge")
+public class MultiWindowFunnelMerge {
+    // 与 FunnelMerge 是同一个函数名，指标记在一起
+    private static final FunctionStats stats = UdfMetrics.function("funnel_merge");
+
+    @InputFunction
+    public static void input(FunnelMergeState state,
+                             @SqlType("array<integer>") Block userState,
+                             @SqlType(StandardTypes.INTEGER) long events_count) {
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        // todo 初始化state，长度[windows num * events num]
+        FunnelMergeAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            accumulator = new FunnelMergeAccumulator(userState.getPositionCount() * (int) events_count);
+            state.setAccumulator(accumulator);
+        }
+        // todo 按照用户在每个窗口下的深度设置相应事件位置的值
+        for (int window = 0; window < userState.getPositionCount(); window++) {
+            accumulator.add(window, (int) IntegerType.INTEGER.getLong(userState, window), (int) events_count);
+        }
+    }
+
+    @CombineFunction
+    public static void combine(FunnelMergeState state1, FunnelMergeState state2) {
+        FunnelMerge.combine(state1, state2);
+    }
+
+    @OutputFunction("array<bigint>")
+    public static void output(FunnelMergeState state, BlockBuilder out) {
+        FunnelMerge.output(state, out);
+    }
+}
@@ -0,0 +1,21 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.spi.function.AccumulatorState;
+import com.facebook.presto.spi.function.AccumulatorStateMetadata;
+import com.ng.bigdata.core.path.PathAccumulator;
+import io.airlift.slice.Slice;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/22 10:00
+ * @Desc: 路径分析第一阶段的状态，保存每个用户的 PathAccumulator
+ */
+@AccumulatorStateMetadata(stateSerializerClass = PathStateSerializer.class, stateFactoryClass = PathStateFactory.class)
+public interface PathState
+        extends AccumulatorState {
+    PathAccumulator<Slice> getAccumulator();
+
+    void setAccumulator(PathAccumulator<Slice> value);
+
+    void addMemoryUsage(long value);
+}
@@ -0,0 +1,53 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.spi.function.AccumulatorStateFactory;
+import com.ng.bigdata.presto.aggregation.GroupedAccumulatorObjectState;
+import com.ng.bigdata.presto.aggregation.SingleAccumulatorObjectState;
+import com.ng.bigdata.core.path.PathAccumulator;
+import io.airlift.slice.Slice;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/22 10:00
+ * @Desc: PathState 的单状态和分组状态实现
+ */
+public class PathStateFactory
+        implements AccumulatorStateFactory<PathState> {
+    @Override
+    public PathState createSingleState() {
+        return new SingleState();
+    }
+
+    @Override
+    public Class<? extends PathState> getSingleStateClass() {
+        return SingleState.class;
+    }
+
+    @Override
+    public PathState createGroupedState() {
+        return new GroupedState();
+    }
+
+    @Override
+    public Class<? extends PathState> getGroupedStateClass() {
+        return GroupedState.class;
+    }
+
+    public static class GroupedState
+            extends GroupedAccumulatorObjectState<PathAccumulator<Slice>>
+            implements PathState {
+        @Override
+        protected long sizeOf(PathAccumulator<Slice> value) {
+            return value.estimatedSize();
+        }
+    }
+
+    public static class SingleState
+            extends SingleAccumulatorObjectState<PathAccumulator<Slice>>
+            implements PathState {
+        @Override
+        protected long sizeOf(PathAccumulator<Slice> value) {
+            return value.estimatedSize();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.function.AccumulatorStateSerializer;
+import com.ng.bigdata.core.path.PathAccumulator;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.Slices;
+
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/22 10:05
+ * @Desc: PathAccumulator 序列化为 varbinary
+ * 格式: 路径深度[4Byte]，起始事件长度[4Byte]，起始事件[nByte]，
+ * 字典大小m[4Byte]，{事件长度[4Byte]，事件[nByte]}*m，缓存的事件数n[4Byte]，事件时间[8Byte]*n，事件编号[4Byte]*n
+ */
+public class PathStateSerializer
+        implements AccumulatorStateSerializer<PathState> {
+    @Override
+    public Type getSerializedType() {
+        return VARBINARY;
+    }
+
+    @Override
+    public void serialize(PathState state, BlockBuilder out) {
+        PathAccumulator<Slice> accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            out.appendNull();
+            return;
+        }
+        // tip 直接写入 BlockBuilder，不经过 DynamicSliceOutput 再整体拷贝一次
+        int size = accumulator.size();
+        out.writeInt(accumulator.getMaxDepth());
+        writeName(out, accumulator.getStartEvent());
+        out.writeInt(accumulator.dictionarySize());
+        for (int i = 0; i < accumulator.dictionarySize(); i++) {
+            writeName(out, accumulator.getName(i));
+        }
+        out.writeInt(size);
+        out.writeBytes(Slices.wrappedLongArray(accumulator.getTimes(), 0, size), 0, size * 8);
+        out.writeBytes(Slices.wrappedIntArray(accumulator.getEvents(), 0, size), 0, size * 4);
+        out.closeEntry();
+    }
+
+    @Override
+    public void deserialize(Block block, int index, PathState state) {
+        if (block.isNull(index)) {
+            state.setAccumulator(null);
+            return;
+        }
+        SliceInput input = VARBINARY.getSlice(block, index).getInput();
+        int max_depth = input.readInt();
+        Slice start_event = readName(input);
+        int dictionary_size = input.readInt();
+        Slice[] names = new Slice[dictionary_size];
+        for (int i = 0; i < dictionary_size; i++) {
+            names[i] = readName(input);
+        }
+        int size = input.readInt();
+        // tip 整段拷贝到累加器的数组，不逐个事件 add
+        long[] times = new long[size];
+        int[] events = new int[size];
+        input.readBytes(Slices.wrappedLongArray(times), 0, size * 8);
+        input.readBytes(Slices.wrappedIntArray(events), 0, size * 4);
+        PathAccumulator<Slice> accumulator = new PathAccumulator<>(max_depth, start_event, Slice::length, times, events);
+        for (Slice name : names) {
+            accumulator.define(name);
+        }
+        state.setAccumulator(accumulator);
+    }
+
+    private static void writeName(BlockBuilder out, Slice name) {
+        out.writeInt(name.length());
+        out.writeBytes(name, 0, name.length());
+    }
+
+    // tip 拷贝一份，状态不引用输入的 Block
+    private static Slice readName(SliceInput input) {
+        return Slices.copyOf(input.readSlice(input.readInt()));
+    }
+}
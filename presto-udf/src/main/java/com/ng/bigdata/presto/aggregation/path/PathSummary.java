@@ -0,0 +1,239 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.VarcharType;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.Slices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.airlift.slice.SizeOf.sizeOf;
+import static io.airlift.slice.SizeOf.sizeOfObjectArray;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/14 15:10
+ * @Desc: Space-Saving 算法统计高频路径，最多保存 capacity 个路径，内存与路径基数无关
+ * 满了之后新路径替换计数最小的路径，并继承其计数作为误差，所以输出的计数是上界
+ * 计数最小的路径用一个最小堆维护，每次更新 O(log capacity)
+ */
+public class PathSummary {
+    // HashMap 每个 entry 的大致开销
+    private static final int ENTRY_SIZE = 64;
+
+    private final int capacity;
+    private final Map<Slice, Integer> slots;
+    private final Slice[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    // 最小堆，存 slot；positions 为 slot 在堆中的下标
+    private final int[] heap;
+    private final int[] positions;
+    private int size;
+    private long keyBytes;
+
+    public PathSummary(int capacity) {
+        this.capacity = capacity;
+        this.slots = new HashMap<>();
+        this.keys = new Slice[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 路径的计数(上界)，不在结果中时为0
+     */
+    public long getCount(Slice key) {
+        Integer slot = slots.get(key);
+        return slot == null ? 0 : counts[slot];
+    }
+
+    /**
+     * 路径计数加 count
+     *
+     * @return 内存变化的字节数
+     */
+    public long add(Slice key, long count) {
+        return add(key, count, 0);
+    }
+
+    private long add(Slice key, long count, long error) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            counts[slot] += count;
+            errors[slot] += error;
+            siftDown(positions[slot]);
+            return 0;
+        }
+        long before = getEstimatedSize();
+        // tip 输入的 Slice 可能是整个 Block 的视图，拷贝一份避免持有整个 Block
+        Slice copy = Slices.copyOf(key);
+        if (size < capacity) {
+            slot = size;
+            keys[slot] = copy;
+            counts[slot] = count;
+            errors[slot] = error;
+            heap[size] = slot;
+            positions[slot] = size;
+            size++;
+            siftUp(positions[slot]);
+        } else {
+            // tip 替换计数最小的路径
+            slot = heap[0];
+            long min = counts[slot];
+            slots.remove(keys[slot]);
+            keyBytes -= keys[slot].length();
+            keys[slot] = copy;
+            counts[slot] = min + count;
+            errors[slot] = min + error;
+            siftDown(0);
+        }
+        slots.put(copy, slot);
+        keyBytes += copy.length();
+        return getEstimatedSize() - before;
+    }
+
+    /**
+     * 合并另一个结果: 一方缺失的路径按该方最小计数补上(满了才补)，再保留计数最大的 capacity 个
+     *
+     * @return 内存变化的字节数
+     */
+    public long merge(PathSummary other) {
+        long before = getEstimatedSize();
+        long min = size < capacity ? 0 : counts[heap[0]];
+        long otherMin = other.size < other.capacity ? 0 : other.counts[other.heap[0]];
+
+        List<Slice> mergedKeys = new ArrayList<>(size + other.size);
+        List<long[]> merged = new ArrayList<>(size + other.size);
+        for (int slot = 0; slot < size; slot++) {
+            Integer otherSlot = other.slots.get(keys[slot]);
+            long count = counts[slot] + (otherSlot == null ? otherMin : other.counts[otherSlot]);
+            long error = errors[slot] + (otherSlot == null ? otherMin : other.errors[otherSlot]);
+            mergedKeys.add(keys[slot]);
+            merged.add(new long[] {count, error});
+        }
+        for (int slot = 0; slot < other.size; slot++) {
+            if (!slots.containsKey(other.keys[slot])) {
+                mergedKeys.add(other.keys[slot]);
+                merged.add(new long[] {other.counts[slot] + min, other.errors[slot] + min});
+            }
+        }
+
+        Integer[] order = new Integer[merged.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(merged.get(b)[0], merged.get(a)[0]));
+
+        slots.clear();
+        size = 0;
+        keyBytes = 0;
+        for (int i = 0; i < order.length && size < capacity; i++) {
+            long[] value = merged.get(order[i]);
+            add(mergedKeys.get(order[i]), value[0], value[1]);
+        }
+        return getEstimatedSize() - before;
+    }
+
+    /**
+     * 按计数从大到小输出前 n 个路径，写入 map(varchar, bigint)
+     */
+    public void writeTop(int n, BlockBuilder out) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+
+        BlockBuilder entryBuilder = out.beginBlockEntry();
+        for (int i = 0; i < order.length && i < n; i++) {
+            VarcharType.VARCHAR.writeSlice(entryBuilder, keys[order[i]]);
+            BigintType.BIGINT.writeLong(entryBuilder, counts[order[i]]);
+        }
+        out.closeEntry();
+    }
+
+    public long getEstimatedSize() {
+        return sizeOfObjectArray(capacity) + sizeOf(counts) + sizeOf(errors) + sizeOf(heap) + sizeOf(positions)
+                + (long) size * ENTRY_SIZE + keyBytes;
+    }
+
+    /**
+     * 直接写入 BlockBuilder，由调用方 closeEntry
+     * 格式: 容量[4Byte]，路径个数[4Byte]，{计数[8Byte]，误差[8Byte]，路径长度[4Byte]，路径[nByte]}...
+     */
+    public void serialize(BlockBuilder out) {
+        out.writeInt(capacity);
+        out.writeInt(size);
+        for (int slot = 0; slot < size; slot++) {
+            out.writeLong(counts[slot]);
+            out.writeLong(errors[slot]);
+            out.writeInt(keys[slot].length());
+            out.writeBytes(keys[slot], 0, keys[slot].length());
+        }
+    }
+
+    public static PathSummary deserialize(SliceInput input) {
+        PathSummary summary = new PathSummary(input.readInt());
+        int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            long count = input.readLong();
+            long error = input.readLong();
+            Slice key = input.readSlice(input.readInt());
+            summary.add(key, count, error);
+        }
+        return summary;
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+}
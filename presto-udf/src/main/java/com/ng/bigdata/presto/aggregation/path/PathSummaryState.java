@@ -0,0 +1,19 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.spi.function.AccumulatorState;
+import com.facebook.presto.spi.function.AccumulatorStateMetadata;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/14 15:40
+ * @Desc: 保存 PathSummary 的状态，分组状态下按分组存放在 ObjectBigArray 中
+ */
+@AccumulatorStateMetadata(stateSerializerClass = PathSummaryStateSerializer.class, stateFactoryClass = PathSummaryStateFactory.class)
+public interface PathSummaryState
+        extends AccumulatorState {
+    PathSummary getSummary();
+
+    void setSummary(PathSummary value);
+
+    void addMemoryUsage(long value);
+}
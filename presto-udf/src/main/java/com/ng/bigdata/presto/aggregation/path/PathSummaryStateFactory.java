@@ -0,0 +1,101 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.array.ObjectBigArray;
+import com.facebook.presto.spi.function.AccumulatorStateFactory;
+import com.facebook.presto.spi.function.GroupedAccumulatorState;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/14 15:50
+ * @Desc: PathSummaryState 的单状态和分组状态实现
+ */
+public class PathSummaryStateFactory
+        implements AccumulatorStateFactory<PathSummaryState> {
+    @Override
+    public PathSummaryState createSingleState() {
+        return new SingleState();
+    }
+
+    @Override
+    public Class<? extends PathSummaryState> getSingleStateClass() {
+        return SingleState.class;
+    }
+
+    @Override
+    public PathSummaryState createGroupedState() {
+        return new GroupedState();
+    }
+
+    @Override
+    public Class<? extends PathSummaryState> getGroupedStateClass() {
+        return GroupedState.class;
+    }
+
+    public static class GroupedState
+            implements PathSummaryState, GroupedAccumulatorState {
+        private final ObjectBigArray<PathSummary> summaries = new ObjectBigArray<>();
+        private long groupId;
+        private long size;
+
+        @Override
+        public void setGroupId(long groupId) {
+            this.groupId = groupId;
+        }
+
+        @Override
+        public void ensureCapacity(long size) {
+            summaries.ensureCapacity(size);
+        }
+
+        @Override
+        public PathSummary getSummary() {
+            return summaries.get(groupId);
+        }
+
+        @Override
+        public void setSummary(PathSummary value) {
+            PathSummary previous = getSummary();
+            if (previous != null) {
+                size -= previous.getEstimatedSize();
+            }
+            summaries.set(groupId, value);
+            if (value != null) {
+                size += value.getEstimatedSize();
+            }
+        }
+
+        @Override
+        public void addMemoryUsage(long value) {
+            size += value;
+        }
+
+        @Override
+        public long getEstimatedSize() {
+            return size + summaries.sizeOf();
+        }
+    }
+
+    public static class SingleState
+            implements PathSummaryState {
+        private PathSummary summary;
+
+        @Override
+        public PathSummary getSummary() {
+            return summary;
+        }
+
+        @Override
+        public void setSummary(PathSummary value) {
+            this.summary = value;
+        }
+
+        @Override
+        public void addMemoryUsage(long value) {
+        }
+
+        @Override
+        public long getEstimatedSize() {
+            return summary == null ? 0 : summary.getEstimatedSize();
+        }
+    }
+}
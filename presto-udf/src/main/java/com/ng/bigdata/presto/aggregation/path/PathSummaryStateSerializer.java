@@ -0,0 +1,41 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.function.AccumulatorStateSerializer;
+
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/14 15:45
+ * @Desc: PathSummary 序列化为 varbinary，格式见 PathSummary.serialize
+ */
+public class PathSummaryStateSerializer
+        implements AccumulatorStateSerializer<PathSummaryState> {
+    @Override
+    public Type getSerializedType() {
+        return VARBINARY;
+    }
+
+    @Override
+    public void serialize(PathSummaryState state, BlockBuilder out) {
+        PathSummary summary = state.getSummary();
+        if (summary == null) {
+            out.appendNull();
+            return;
+        }
+        summary.serialize(out);
+        out.closeEntry();
+    }
+
+    @Override
+    public void deserialize(Block block, int index, PathSummaryState state) {
+        if (block.isNull(index)) {
+            state.setSummary(null);
+            return;
+        }
+        state.setSummary(PathSummary.deserialize(VARBINARY.getSlice(block, index).getInput()));
+    }
+}
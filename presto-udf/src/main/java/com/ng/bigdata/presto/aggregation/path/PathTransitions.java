@@ -0,0 +1,123 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.common.type.VarcharType;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.core.path.PathAccumulator;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/14 10:30
+ * @Desc: 路径分析的第一阶段，计算每个用户从起始事件开始的事件路径
+ * 取用户第一次发生起始事件的时间，按时间顺序取之后的事件，路径最多包含 max_depth 个事件(含起始事件)，max_depth 为 1~100
+ * 替代按事件对做自关联的写法
+ * <p>
+ * 状态为 presto-udf-core 中的 PathAccumulator，按用户缓存 (事件时间, 事件编号)，
+ * 事件编号来自每个用户状态自己的事件字典(路径的事件集合事先未知，不能用查询级的字典)，这里只负责拷贝新的事件名和拼接结果
+ * <p>
+ * eg:
+ * select distinct_id, path_transitions(ctime, event, 'AppStart', 4) as user_path
+ * from ods_news.event
+ * where logday>='20200923' and logday<'20200930'
+ * group by distinct_id
+ * <p>
+ * 输出结果类似如下，逗号分隔，没有发生起始事件的用户输出 null：
+ * user1 AppStart,AppPageView,AppClick,AppPageView
+ * user2 AppStart,AppPageView
+ */
+@AggregationFunction("path_transitions")
+public class PathTransitions {
+    private static final byte SEPARATOR = ',';
+    private static final FunctionStats stats = UdfMetrics.function("path_transitions");
+
+    @InputFunction
+    public static void input(PathState state,
+                             @SqlType(StandardTypes.BIGINT) long eventTime,         // 事件发生时间
+                             @SqlType(StandardTypes.VARCHAR) Slice event,           // 事件名称
+                             @SqlType(StandardTypes.VARCHAR) Slice start_event,     // 起始事件
+                             @SqlType(StandardTypes.INTEGER) long max_depth) {      // 路径最大深度
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        PathAccumulator<Slice> accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            // 深度决定输出时每个分组分配的数组大小和插入排序的开销，超出范围直接报错
+            if (max_depth < 1 || max_depth > PathAccumulator.MAX_DEPTH) {
+                throw new PrestoException(INVALID_FUNCTION_ARGUMENT,
+                        "max_depth must be between 1 and " + PathAccumulator.MAX_DEPTH + ": " + max_depth);
+            }
+            // tip 输入的 Slice 可能引用整个 Block，状态中保存的事件名都拷贝一份
+            accumulator = new PathAccumulator<>((int) max_depth, Slices.copyOf(start_event), Slice::length);
+            state.setAccumulator(accumulator);
+        }
+        long size = accumulator.estimatedSize();
+        int event_index = accumulator.lookup(event);
+        if (event_index < 0) {
+            event_index = accumulator.define(Slices.copyOf(event));
+        }
+        accumulator.add(eventTime, event_index);
+        state.addMemoryUsage(accumulator.estimatedSize() - size);
+    }
+
+    @CombineFunction
+    public static void combine(PathState state1, PathState state2) {
+        PathAccumulator<Slice> accumulator = state1.getAccumulator();
+        PathAccumulator<Slice> other = state2.getAccumulator();
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        if (other == null) {
+            return;
+        }
+        if (accumulator == null) {
+            state1.setAccumulator(other);
+        } else {
+            long size = accumulator.estimatedSize();
+            accumulator.merge(other);
+            state1.addMemoryUsage(accumulator.estimatedSize() - size);
+        }
+    }
+
+    @OutputFunction(StandardTypes.VARCHAR)
+    public static void output(PathState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        PathAccumulator<Slice> accumulator = state.getAccumulator();
+        int[] events = accumulator == null ? null : accumulator.finish();
+        if (events == null) {
+            out.appendNull();
+            if (metrics) {
+                stats.output(accumulator == null ? 0 : accumulator.estimatedSize(), System.nanoTime() - start);
+            }
+            return;
+        }
+
+        // todo 拼接路径，逗号分隔
+        int path_length = events.length - 1;
+        for (int event : events) {
+            path_length += accumulator.getName(event).length();
+        }
+        Slice path = Slices.allocate(path_length);
+        int position = 0;
+        for (int i = 0; i < events.length; i++) {
+            if (i > 0) {
+                path.setByte(position++, SEPARATOR);
+            }
+            Slice name = accumulator.getName(events[i]);
+            path.setBytes(position, name);
+            position += name.length();
+        }
+        VarcharType.VARCHAR.writeSlice(out, path);
+        if (metrics) {
+            stats.output(accumulator.estimatedSize(), System.nanoTime() - start);
+        }
+    }
+}
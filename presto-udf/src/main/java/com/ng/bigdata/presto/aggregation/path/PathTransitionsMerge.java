@@ -0,0 +1,89 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/14 16:20
+ * @Desc: 路径分析的第二阶段，根据 path_transitions 的结果统计出现次数最多的 top_n 条路径
+ * 使用 Space-Saving 算法(见 PathSummary)，每个状态最多保存 top_n * CAPACITY_FACTOR 条路径，
+ * 内存与路径基数无关，输出的计数为近似值(上界)
+ * eg:
+ * select path_transitions_merge(user_path, 20) from
+ * (select distinct_id, path_transitions(ctime, event, 'AppStart', 4) as user_path
+ * from ods_news.event
+ * where logday>='20200923' and logday<'20200930'
+ * group by distinct_id
+ * )
+ * 结果样例: {AppStart,AppPageView,AppClick=3000, AppStart,AppPageView=2500, ...}
+ */
+@AggregationFunction("path_transitions_merge")
+public class PathTransitionsMerge {
+    // 实际保存的路径数为 top_n 的倍数，倍数越大 top_n 的计数越准
+    private static final int CAPACITY_FACTOR = 8;
+    // PathSummary 按 top_n * CAPACITY_FACTOR 一次分配全部数组，限制 top_n 避免溢出和过大的分组状态
+    private static final int MAX_TOP_N = 10000;
+    private static final FunctionStats stats = UdfMetrics.function("path_transitions_merge");
+
+    @InputFunction
+    public static void input(@AggregationState PathSummaryState state,
+                             @SqlType(StandardTypes.VARCHAR) Slice path,     // 每个用户的路径
+                             @SqlType(StandardTypes.INTEGER) long top_n) {   // 输出路径个数
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        if (top_n < 1 || top_n > MAX_TOP_N) {
+            throw new PrestoException(INVALID_FUNCTION_ARGUMENT, "top_n must be between 1 and " + MAX_TOP_N + ": " + top_n);
+        }
+        PathSummary summary = state.getSummary();
+        if (summary == null) {
+            summary = new PathSummary((int) top_n * CAPACITY_FACTOR);
+            state.setSummary(summary);
+        }
+        state.addMemoryUsage(summary.add(path, 1));
+    }
+
+    @CombineFunction
+    public static void combine(@AggregationState PathSummaryState state,
+                               @AggregationState PathSummaryState otherState) {
+        PathSummary summary = state.getSummary();
+        PathSummary other = otherState.getSummary();
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        if (other == null) {
+            return;
+        }
+        if (summary == null) {
+            state.setSummary(other);
+        } else {
+            state.addMemoryUsage(summary.merge(other));
+        }
+    }
+
+    @OutputFunction("map(varchar,bigint)")
+    public static void output(@AggregationState PathSummaryState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        PathSummary summary = state.getSummary();
+        if (summary == null) {
+            out.appendNull();
+            if (metrics) {
+                stats.output(0, System.nanoTime() - start);
+            }
+            return;
+        }
+        summary.writeTop(summary.getCapacity() / CAPACITY_FACTOR, out);
+        if (metrics) {
+            stats.output(summary.getEstimatedSize(), System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.spi.PrestoException;
+import com.ng.bigdata.core.retention.RetentionBuckets;
+import com.ng.bigdata.presto.metrics.CacheStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import java.time.DateTimeException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * @Description: 留存的基础信息
+ * @Author: QF
+ * @Date: 2020/6/22 2:09 PM
+ * @Version V1.0
+ */
+public class Base {
+
+    // 位图的计算见 presto-udf-core 中的 RetentionAccumulator，这里只保存事件名与下标的对应关系
+
+    // 缓存的事件列表和分桶个数上限，超过时清空重建，避免长期运行的 worker 上无限增长
+    public static final int MAX_CACHED_EVENTS = 1024;
+
+    // 起始事件和下标的对应关系: {events: {event: index, ...}, ....}, 对应flag为1
+    public static Map<Slice, Map<Slice, Byte>> event_pos_dict_start = new ConcurrentHashMap<>();
+
+    // 结束事件和下标的对应关系: {events: {event: index, ...}, ....}, 对应flag为2
+    public static Map<Slice, Map<Slice, Byte>> event_pos_dict_end = new ConcurrentHashMap<>();
+
+    private static final CacheStats event_cache_stats = UdfMetrics.cache("retention_events");
+    private static final CacheStats bucket_cache_stats = UdfMetrics.cache("retention_buckets");
+
+    // 获取事件和下标的对应关系, 不存在时初始化, flag含义参见上边
+    public static Map<Slice, Byte> get_events(Slice events, int flag) {
+        Map<Slice, Byte> pos_dict = (flag == 1 ? event_pos_dict_start : event_pos_dict_end).get(events);
+        if (pos_dict != null) {
+            if (UdfMetrics.enabled()) {
+                event_cache_stats.hit();
+            }
+            return pos_dict;
+        }
+        if (UdfMetrics.enabled()) {
+            event_cache_stats.miss();
+        }
+        return init_events(events, flag);
+    }
+
+    // 初始化事件和下标的对应关系, flag为1或2, flag含义参见上边
+    public static Map<Slice, Byte> init_events(Slice events, int flag) {
+        List<String> fs = Arrays.asList(new String(events.getBytes()).split(","));
+
+        Map<Slice, Byte> pos_dict = new HashMap<>();
+        for (byte i = 0; i < fs.size(); ++i) {
+            pos_dict.put(Slices.utf8Slice(fs.get(i)), i);
+        }
+
+        Map<Slice, Map<Slice, Byte>> event_pos_dict = flag == 1 ? event_pos_dict_start : event_pos_dict_end;
+        if (event_pos_dict.size() >= MAX_CACHED_EVENTS) {
+            event_cache_stats.evict(event_pos_dict.size());
+            event_pos_dict.clear();
+        }
+        // events 可能引用整个输入 Block，拷贝一份作为 key
+        event_pos_dict.put(Slices.copyOf(events), pos_dict);
+        return pos_dict;
+    }
+
+    // 分桶和参数的对应关系: {起始日期,时区,粒度,长度: RetentionBuckets}, 同一个查询只计算一次
+    public static Map<BucketKey, RetentionBuckets> bucket_dict = new ConcurrentHashMap<>();
+
+    // 每个 driver 线程最近一次使用的分桶, 参数相同时不需要查 bucket_dict, 并发的不同查询之间互不影响
+    private static final ThreadLocal<CachedBuckets> last_buckets = new ThreadLocal<>();
+
+    // 获取分桶, 参数不合法时抛出 INVALID_FUNCTION_ARGUMENT
+    public static RetentionBuckets get_buckets(Slice start_date, Slice time_zone, Slice granularity, int length) {
+        CachedBuckets cached = last_buckets.get();
+        if (cached != null && cached.key.matches(start_date, time_zone, granularity, length)) {
+            if (UdfMetrics.enabled()) {
+                bucket_cache_stats.hit();
+            }
+            return cached.buckets;
+        }
+        if (UdfMetrics.enabled()) {
+            bucket_cache_stats.miss();
+        }
+        // tip 先用输入的 Slice 直接查找, 不拼接字符串也不拷贝
+        RetentionBuckets buckets = bucket_dict.get(new BucketKey(start_date, time_zone, granularity, length));
+        // tip 保存下来的 key 拷贝一份, 不引用输入的 Block
+        BucketKey key = new BucketKey(Slices.copyOf(start_date), Slices.copyOf(time_zone), Slices.copyOf(granularity), length);
+        if (buckets == null) {
+            try {
+                buckets = RetentionBuckets.of(start_date.toStringUtf8(), time_zone.toStringUtf8(), granularity.toStringUtf8(), length);
+            } catch (IllegalArgumentException | DateTimeException e) {
+                throw new PrestoException(INVALID_FUNCTION_ARGUMENT, e.getMessage(), e);
+            }
+            if (bucket_dict.size() >= MAX_CACHED_EVENTS) {
+                bucket_cache_stats.evict(bucket_dict.size());
+                bucket_dict.clear();
+            }
+            RetentionBuckets previous = bucket_dict.putIfAbsent(key, buckets);
+            if (previous != null) {
+                buckets = previous;
+            }
+        }
+        last_buckets.set(new CachedBuckets(key, buckets));
+        return buckets;
+    }
+
+    public static class BucketKey {
+        private final Slice start_date;
+        private final Slice time_zone;
+        private final Slice granularity;
+        private final int length;
+
+        private BucketKey(Slice start_date, Slice time_zone, Slice granularity, int length) {
+            this.start_date = start_date;
+            this.time_zone = time_zone;
+            this.granularity = granularity;
+            this.length = length;
+        }
+
+        private boolean matches(Slice start_date, Slice time_zone, Slice granularity, int length) {
+            return this.length == length
+                    && this.start_date.equals(start_date)
+                    && this.time_zone.equals(time_zone)
+                    && this.granularity.equals(granularity);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return matches(other.start_date, other.time_zone, other.granularity, other.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start_date, time_zone, granularity, length);
+        }
+    }
+
+    private static class CachedBuckets {
+        private final BucketKey key;
+        private final RetentionBuckets buckets;
+
+        private CachedBuckets(BucketKey key, RetentionBuckets buckets) {
+            this.key = key;
+            this.buckets = buckets;
+        }
+    }
+}
@@ -4,9 +4,12 @@ import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.BigintType;
 import com.facebook.presto.common.type.StandardTypes;
 import com.facebook.presto.spi.function.*;
-import com.ng.bigdata.presto.aggregation.SliceState;
+import com.ng.bigdata.core.retention.RetentionAccumulator;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
 import io.airlift.slice.Slice;
-import io.airlift.slice.Slices;
+
+import java.util.Map;
 
 
 /**
@@ -39,13 +42,10 @@ import io.airlift.slice.Slices;
  */
 @AggregationFunction("retention")
 public class Retention extends Base {
-
-    private static final int FIRST = 2;
-    private static final int SECOND = 8;
-    private static final int INDEX = FIRST;
+    private static final FunctionStats stats = UdfMetrics.function("retention");
 
     @InputFunction
-    public static void input(SliceState state,                                      // 存储每个用户的状态
+    public static void input(RetentionState state,                                      // 存储每个用户的状态
                              @SqlType(StandardTypes.BIGINT) long diffCtime,             // 当前事件的事件距离某固定日期的差值 , 为了计算一个准确的周或者月
                              @SqlType(StandardTypes.BIGINT) long diffStartTime,       // 当前查询的起始日期距离某固定日期的差值,  为了计算一个准确周或者月
                              @SqlType(StandardTypes.INTEGER) long first_length,     // 当前查询的first长度(15天, 12周, 6月)
@@ -53,90 +53,67 @@ public class Retention extends Base {
                              @SqlType(StandardTypes.VARCHAR) Slice event,           // 当前事件的名称, A,B,C,D
                              @SqlType(StandardTypes.VARCHAR) Slice events_start,    // 当前查询的起始事件列表, 逗号分隔
                              @SqlType(StandardTypes.VARCHAR) Slice events_end) {    // 当前查询的结束事件列表, 逗号分隔
-        // 获取状态
-        Slice slice = state.getSlice();
-        // 判断是否需要初始化events
-        if (!event_pos_dict_start.containsKey(events_start)) {
-            init_events(events_start, 1);
-        }
-        // 判断是否需要初始化events
-        if (!event_pos_dict_end.containsKey(events_end)) {
-            init_events(events_end, 2);
+        if (UdfMetrics.enabled()) {
+            stats.input();
         }
+        // 获取events, 不存在时初始化
+        Map<Slice, Byte> pos_dict_start = get_events(events_start, 1);
+        Map<Slice, Byte> pos_dict_end = get_events(events_end, 2);
         // 初始化某一个用户的state, 分别存放不同事件在每个时间段的标示
-        if (null == slice) {
-            slice = Slices.allocate(FIRST + SECOND);
+        RetentionAccumulator accumulator = state.getAccumulator();
+        if (null == accumulator) {
+            accumulator = new RetentionAccumulator();
+            state.setAccumulator(accumulator);
         }
+        long offset = diffCtime - diffStartTime;
         // 判读是否为起始事件
-        if (event_pos_dict_start.get(events_start).containsKey(event)) {
-            int xindex_max = (int) first_length - 1;
-
-            // 获取用户在当前index的状态
-            short current_value = slice.getShort(0);
-            if (current_value < max_value_array_short.get(xindex_max)) {
-                // 获取下标
-                int xindex = (int) (diffCtime - diffStartTime);
-                if (xindex >= 0 && xindex <= xindex_max) {
-                    // 更新状态
-                    slice.setShort(0, current_value | bit_array_short.get(xindex));
-                }
-            }
-
+        if (pos_dict_start.containsKey(event)) {
+            accumulator.addStart(offset, (int) first_length);
         }
         // 判断是否为结束事件
-        if (event_pos_dict_end.get(events_end).containsKey(event)) {
-            int xindex_max = (int) (first_length + second_length - 1) - 1;
-
-            // 获取用户在当前index的状态
-            long current_value = slice.getLong(INDEX);
-            if (current_value < max_value_array_long.get(xindex_max)) {
-                // 获取下标
-                int xindex = (int) (diffCtime - (diffStartTime + 1));
-                if (xindex >= 0 && xindex <= xindex_max) {
-                    // 更新状态
-                    slice.setLong(INDEX, current_value | bit_array_long.get(xindex));
-                }
-            }
+        if (pos_dict_end.containsKey(event)) {
+            accumulator.addEnd(offset, (int) first_length, (int) second_length);
         }
-
-        // 返回结果
-        state.setSlice(slice);
     }
 
     @CombineFunction
-    public static void combine(SliceState state, SliceState otherState) {
-        // 获取状态
-        Slice slice = state.getSlice();
-        Slice otherslice = otherState.getSlice();
-
-        // 更新状态并返回结果
-        if (null == slice) {
-            state.setSlice(otherslice);
+    public static void combine(RetentionState state, RetentionState otherState) {
+        RetentionAccumulator accumulator = state.getAccumulator();
+        RetentionAccumulator other = otherState.getAccumulator();
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        if (null == other) {
+            return;
+        }
+        if (null == accumulator) {
+            state.setAccumulator(other);
         } else {
-            slice.setShort(0, slice.getShort(0) | otherslice.getShort(0));
-            slice.setLong(INDEX, slice.getLong(INDEX) | otherslice.getLong(INDEX));
-            state.setSlice(slice);
+            accumulator.merge(other);
         }
     }
 
     @OutputFunction("array<bigint>")
-    public static void output(SliceState state, BlockBuilder out) {
-        // 获取状态
-        Slice slice = state.getSlice();
-
+    public static void output(RetentionState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        RetentionAccumulator accumulator = state.getAccumulator();
 
         // 构造结果: 当前用户在第一个事件中每一天(周/月)的状态, 和在第二个事件中每一天(周/月)的状态
         BlockBuilder blockBuilder = out.beginBlockEntry();
 
-        if (null == slice) {
+        if (null == accumulator) {
             BigintType.BIGINT.writeLong(blockBuilder, 0);
             BigintType.BIGINT.writeLong(blockBuilder, 0);
         } else {
-            BigintType.BIGINT.writeLong(blockBuilder, slice.getShort(0));
-            BigintType.BIGINT.writeLong(blockBuilder, slice.getLong(INDEX));
+            BigintType.BIGINT.writeLong(blockBuilder, accumulator.getFirst());
+            BigintType.BIGINT.writeLong(blockBuilder, accumulator.getSecond());
         }
 
         // 返回结果
         out.closeEntry();
+        if (metrics) {
+            stats.output(null == accumulator ? 0 : accumulator.estimatedSize(), System.nanoTime() - start);
+        }
     }
 }
@@ -5,11 +5,9 @@ import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.BigintType;
 import com.facebook.presto.common.type.StandardTypes;
 import com.facebook.presto.spi.function.*;
-import com.qf.bigdata.presto.aggregation.SliceState;
-import io.airlift.slice.Slice;
-import io.airlift.slice.Slices;
-
-import static com.facebook.presto.common.type.TypeUtils.readNativeValue;
+import com.ng.bigdata.core.retention.RetentionMergeAccumulator;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
 
 /**
  * @Description: 计算 日，周，月 留存，第二阶段函数
@@ -54,6 +52,7 @@ import static com.facebook.presto.common.type.TypeUtils.readNativeValue;
  */
 @AggregationFunction("retention_merge")
 public class RetentionMerge extends Base {
+    private static final FunctionStats stats = UdfMetrics.function("retention_merge");
 
     /**
      *
@@ -73,98 +72,64 @@ public class RetentionMerge extends Base {
      *                       06-03 06-04 06-05 这三天留存
      */
     @InputFunction
-    public static void input(SliceState state,
+    public static void input(RetentionMergeState state,
                              @SqlType("array<bigint>") Block userState,  // 每个用户的状态
                              @SqlType(StandardTypes.INTEGER) long first_length,         // 当前查询的first长度(15, 12, 6)
                              @SqlType(StandardTypes.INTEGER) long second_length) {      // 当前查询的second长度(30, 8, 3)
-        // 获取状态
-        Slice slice = state.getSlice();
-
-        // 初始化state
-        if (null == slice) {
-
-            /*
-             *  比如 first_length =2  second_length=3
-             *  我们最终需要的结果是 [x,x,x,  x,x,x,  x,x] 总共8个位置, 最后两个位置代表first_length=2 需要两个位置存储当天的数据
-             *  前面两个 x,x,x  代表在first_length的每一天，留存second_length=3的每天的数据位置 , 正好 2 * 3 =6 个位置
-             *
-             *  first_length，这个slice的大小就确定了 比如上边的 first_length =2  second_length=3
-             *  slice大小就是 （2*3 +2）* 4   乘以4因为int类型，占4个字节
-             *
-             */
-            slice = Slices.allocate((int) (first_length * second_length + first_length) * 4);
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        // 初始化state, 大小为 first_length * second_length + first_length, 见 RetentionMergeAccumulator
+        RetentionMergeAccumulator accumulator = state.getAccumulator();
+        if (null == accumulator) {
+            accumulator = new RetentionMergeAccumulator((int) first_length, (int) second_length);
+            state.setAccumulator(accumulator);
         }
 
         // 获取UserState值,比如我们之前举例 [3,5]
         // first_value = 3
         // second_value = 5
-        long first_value = (long) readNativeValue(BigintType.BIGINT, userState, 0);
-        long second_value = (long) readNativeValue(BigintType.BIGINT, userState, 1);
+        long first_value = BigintType.BIGINT.getLong(userState, 0);
+        long second_value = BigintType.BIGINT.getLong(userState, 1);
 
         // 计算用户在每个位置的状态值
-        for (int i = 0; i < first_length; ++i) {
-            // 判断是否更改first计数， 这个就是拿我们取出来的first_value值，它代表了用户在起始事件每天的状态
-            // 比如 3 , 然后和我们预先定义一个对应的位置索引值 [1,2,4,8.....] 取 按位与操作
-            // 比如第一次循环 3 & 1 不等于0, 代表在第一个位置有值，也就是用户在这一天出现过，第二次循环 3&2 不等于0，代表在第二个位置有值
-            // 也就是在这一天也出现过
-            if ((first_value & bit_array_long.get(i)) != 0) {
-                // 第一个事件存在, 更改first计数
-                int first_index = (int) (first_length * second_length + i) * 4;
-                slice.setInt(first_index, slice.getInt(first_index) + 1);
-
-                // 判断是否更改second计数
-                // 这个第二层循环，第一层循环我们得到了一个用户在起始事件某天的状态，第二层循环就是判读该用户该天的状态后，
-                // second_length 每天后的状态， 比如 second_length=3 ,就是用户在之后三天的每天的状态
-                // 这就相当于比如用户 06-01日活跃了，之后三天06-02，06-03，06-64 每天的状态，此时如果second_value=5 表示了用户
-                // 在06-02 06-04 这两天活跃
-                for (int j = i; j < i + second_length; ++j) {
-                    if ((second_value & bit_array_long.get(j)) != 0) {
-                        // 第二个事件存在, 更改second计数
-                        int second_index = (int) (i * second_length + (j - i)) * 4;
-                        slice.setInt(second_index, slice.getInt(second_index) + 1);
-                    }
-                }
-            }
-        }
-
-        // 返回状态
-        state.setSlice(slice);
+        accumulator.add(first_value, second_value);
     }
 
     @CombineFunction
-    public static void combine(SliceState state, SliceState otherState) {
-        // 获取状态
-        Slice slice = state.getSlice();
-        Slice otherslice = otherState.getSlice();
-
-        // 更新状态并返回结果
-        if (null == slice) {
-            state.setSlice(otherslice);
+    public static void combine(RetentionMergeState state, RetentionMergeState otherState) {
+        RetentionMergeAccumulator accumulator = state.getAccumulator();
+        RetentionMergeAccumulator other = otherState.getAccumulator();
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        if (null == other) {
+            return;
+        }
+        if (null == accumulator) {
+            state.setAccumulator(other);
         } else {
-            for (int index = 0; index < slice.length(); index += 4) {
-                slice.setInt(index, slice.getInt(index) + otherslice.getInt(index));
-            }
-            state.setSlice(slice);
+            accumulator.merge(other);
         }
     }
 
     @OutputFunction("array<bigint>")
-    public static void output(SliceState state, BlockBuilder out) {
-        // 获取状态
-        Slice slice = state.getSlice();
-        if (null == slice) {
-            BlockBuilder blockBuilder = out.beginBlockEntry();
-//            out.writeObject(blockBuilder.build());
-            out.closeEntry();
-            return;
-        }
+    public static void output(RetentionMergeState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        RetentionMergeAccumulator accumulator = state.getAccumulator();
 
         // 构造结果: first_length日/周/月中每日/周/月的second_length留存数, 最后为first_length日/周/月的总用户数
         BlockBuilder blockBuilder = out.beginBlockEntry();
-        for (int index = 0; index < slice.length(); index += 4) {
-            BigintType.BIGINT.writeLong(blockBuilder, slice.getInt(index));
+        if (null != accumulator) {
+            for (long count : accumulator.finish()) {
+                BigintType.BIGINT.writeLong(blockBuilder, count);
+            }
         }
 
         out.closeEntry();
+        if (metrics) {
+            stats.output(accumulator == null ? 0 : accumulator.estimatedSize(), System.nanoTime() - start);
+        }
     }
 }
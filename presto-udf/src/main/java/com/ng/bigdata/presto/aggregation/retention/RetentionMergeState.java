@@ -0,0 +1,20 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.spi.function.AccumulatorState;
+import com.facebook.presto.spi.function.AccumulatorStateMetadata;
+import com.ng.bigdata.core.retention.RetentionMergeAccumulator;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:50
+ * @Desc: 留存第二阶段的状态，保存 RetentionMergeAccumulator
+ */
+@AccumulatorStateMetadata(stateSerializerClass = RetentionMergeStateSerializer.class, stateFactoryClass = RetentionMergeStateFactory.class)
+public interface RetentionMergeState
+        extends AccumulatorState {
+    RetentionMergeAccumulator getAccumulator();
+
+    void setAccumulator(RetentionMergeAccumulator value);
+
+    void addMemoryUsage(long value);
+}
@@ -0,0 +1,52 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.spi.function.AccumulatorStateFactory;
+import com.ng.bigdata.presto.aggregation.GroupedAccumulatorObjectState;
+import com.ng.bigdata.presto.aggregation.SingleAccumulatorObjectState;
+import com.ng.bigdata.core.retention.RetentionMergeAccumulator;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:50
+ * @Desc: RetentionMergeState 的单状态和分组状态实现
+ */
+public class RetentionMergeStateFactory
+        implements AccumulatorStateFactory<RetentionMergeState> {
+    @Override
+    public RetentionMergeState createSingleState() {
+        return new SingleState();
+    }
+
+    @Override
+    public Class<? extends RetentionMergeState> getSingleStateClass() {
+        return SingleState.class;
+    }
+
+    @Override
+    public RetentionMergeState createGroupedState() {
+        return new GroupedState();
+    }
+
+    @Override
+    public Class<? extends RetentionMergeState> getGroupedStateClass() {
+        return GroupedState.class;
+    }
+
+    public static class GroupedState
+            extends GroupedAccumulatorObjectState<RetentionMergeAccumulator>
+            implements RetentionMergeState {
+        @Override
+        protected long sizeOf(RetentionMergeAccumulator value) {
+            return value.estimatedSize();
+        }
+    }
+
+    public static class SingleState
+            extends SingleAccumulatorObjectState<RetentionMergeAccumulator>
+            implements RetentionMergeState {
+        @Override
+        protected long sizeOf(RetentionMergeAccumulator value) {
+            return value.estimatedSize();
+        }
+    }
+}
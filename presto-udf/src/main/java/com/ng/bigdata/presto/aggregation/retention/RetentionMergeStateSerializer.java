@@ -0,0 +1,53 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.function.AccumulatorStateSerializer;
+import com.ng.bigdata.core.retention.RetentionMergeAccumulator;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:55
+ * @Desc: RetentionMergeAccumulator 序列化为 varbinary
+ * 格式: first长度[4Byte]，second长度[4Byte]，留存人数[8Byte]...
+ */
+public class RetentionMergeStateSerializer
+        implements AccumulatorStateSerializer<RetentionMergeState> {
+    private static final int COUNT_FLAG_LENGTH = 8;
+
+    @Override
+    public Type getSerializedType() {
+        return VARBINARY;
+    }
+
+    @Override
+    public void serialize(RetentionMergeState state, BlockBuilder out) {
+        RetentionMergeAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            out.appendNull();
+            return;
+        }
+        long[] counts = accumulator.finish();
+        out.writeInt(accumulator.getFirstLength());
+        out.writeInt(accumulator.getSecondLength());
+        out.writeBytes(Slices.wrappedLongArray(counts), 0, counts.length * 8);
+        out.closeEntry();
+    }
+
+    @Override
+    public void deserialize(Block block, int index, RetentionMergeState state) {
+        if (block.isNull(index)) {
+            state.setAccumulator(null);
+            return;
+        }
+        Slice slice = VARBINARY.getSlice(block, index);
+        long[] counts = new long[(slice.length() - COUNT_FLAG_LENGTH) / 8];
+        slice.getBytes(COUNT_FLAG_LENGTH, Slices.wrappedLongArray(counts), 0, counts.length * 8);
+        state.setAccumulator(new RetentionMergeAccumulator(slice.getInt(0), slice.getInt(4), counts));
+    }
+}
@@ -0,0 +1,20 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.spi.function.AccumulatorState;
+import com.facebook.presto.spi.function.AccumulatorStateMetadata;
+import com.ng.bigdata.core.retention.RetentionAccumulator;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:40
+ * @Desc: 留存第一阶段的状态，保存每个用户的 RetentionAccumulator
+ */
+@AccumulatorStateMetadata(stateSerializerClass = RetentionStateSerializer.class, stateFactoryClass = RetentionStateFactory.class)
+public interface RetentionState
+        extends AccumulatorState {
+    RetentionAccumulator getAccumulator();
+
+    void setAccumulator(RetentionAccumulator value);
+
+    void addMemoryUsage(long value);
+}
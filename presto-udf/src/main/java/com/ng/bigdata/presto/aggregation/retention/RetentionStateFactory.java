@@ -0,0 +1,52 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.spi.function.AccumulatorStateFactory;
+import com.ng.bigdata.presto.aggregation.GroupedAccumulatorObjectState;
+import com.ng.bigdata.presto.aggregation.SingleAccumulatorObjectState;
+import com.ng.bigdata.core.retention.RetentionAccumulator;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:40
+ * @Desc: RetentionState 的单状态和分组状态实现
+ */
+public class RetentionStateFactory
+        implements AccumulatorStateFactory<RetentionState> {
+    @Override
+    public RetentionState createSingleState() {
+        return new SingleState();
+    }
+
+    @Override
+    public Class<? extends RetentionState> getSingleStateClass() {
+        return SingleState.class;
+    }
+
+    @Override
+    public RetentionState createGroupedState() {
+        return new GroupedState();
+    }
+
+    @Override
+    public Class<? extends RetentionState> getGroupedStateClass() {
+        return GroupedState.class;
+    }
+
+    public static class GroupedState
+            extends GroupedAccumulatorObjectState<RetentionAccumulator>
+            implements RetentionState {
+        @Override
+        protected long sizeOf(RetentionAccumulator value) {
+            return value.estimatedSize();
+        }
+    }
+
+    public static class SingleState
+            extends SingleAccumulatorObjectState<RetentionAccumulator>
+            implements RetentionState {
+        @Override
+        protected long sizeOf(RetentionAccumulator value) {
+            return value.estimatedSize();
+        }
+    }
+}
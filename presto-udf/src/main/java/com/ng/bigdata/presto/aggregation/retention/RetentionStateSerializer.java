@@ -0,0 +1,47 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.function.AccumulatorStateSerializer;
+import com.ng.bigdata.core.retention.RetentionAccumulator;
+import io.airlift.slice.Slice;
+
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/15 14:45
+ * @Desc: RetentionAccumulator 序列化为 varbinary，格式: 起始事件状态[2Byte]，结束事件状态[8Byte]
+ */
+public class RetentionStateSerializer
+        implements AccumulatorStateSerializer<RetentionState> {
+    private static final int FIRST = 2;
+
+    @Override
+    public Type getSerializedType() {
+        return VARBINARY;
+    }
+
+    @Override
+    public void serialize(RetentionState state, BlockBuilder out) {
+        RetentionAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            out.appendNull();
+            return;
+        }
+        out.writeShort(accumulator.getFirst());
+        out.writeLong(accumulator.getSecond());
+        out.closeEntry();
+    }
+
+    @Override
+    public void deserialize(Block block, int index, RetentionState state) {
+        if (block.isNull(index)) {
+            state.setAccumulator(null);
+            return;
+        }
+        Slice slice = VARBINARY.getSlice(block, index);
+        state.setAccumulator(new RetentionAccumulator(slice.getShort(0), slice.getLong(FIRST)));
+    }
+}
@@ -0,0 +1,113 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.core.retention.RetentionAccumulator;
+import com.ng.bigdata.core.retention.RetentionMergeAccumulator;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * @Description: 计算 日，周，月 滚动留存，第二阶段函数，输入与 retention_merge 相同
+ * retention_merge 统计的是第 j 天当天的留存，这里统计的是 j 天内的留存(之后 1~j 天内任意一天发生过结束事件即算留存)，
+ * 一次查询得到起始范围内每一天的 1~second_length 日留存，用于留存趋势，不需要每个起始日、每个留存天数单独查询
+ * <p>
+ * eg:
+ * 查询20200620到20200626日每天发生AppClick事件的用户，7天内再次发生该行为的用户
+ * select retention_rolling_merge(user_state, 7, 7) from(
+ * select distinct_id, retention(ctime, '2020-06-20', 'Asia/Shanghai', 'day',
+ * 7, 7, event,'AppClick', 'AppClick') as user_state
+ * from ods_news.event
+ * where logday >= '20200620' and logday < '20200704' and event in ('AppClick')
+ * group by distinct_id
+ * )
+ * 返回 7*7+7 个值，第 i*7+j 个值为 20200620 之后第 i 天的用户在之后 j+1 天内的留存人数，最后7个值为每一天的起始用户数，
+ * 比如第 6, 13, 20 ... 个值即为每一天的7日留存趋势
+ * <p>
+ * 受第一阶段位图的限制，first_length 为1~15，second_length 至少为1，first_length + second_length 最大64，超出时抛出 INVALID_FUNCTION_ARGUMENT
+ * @Author: kaisy
+ * @Date: 2020/10/21 11:00
+ * @Version V1.0
+ */
+@AggregationFunction("retention_rolling_merge")
+public class RollingRetentionMerge extends Base {
+    private static final FunctionStats stats = UdfMetrics.function("retention_rolling_merge");
+
+    @InputFunction
+    public static void input(RetentionMergeState state,
+                             @SqlType("array<bigint>") Block userState,  // 每个用户的状态
+                             @SqlType(StandardTypes.INTEGER) long first_length,         // 当前查询的first长度(15, 12, 6)
+                             @SqlType(StandardTypes.INTEGER) long second_length) {      // 当前查询的second长度(30, 8, 3)
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        // 初始化state, 大小为 first_length * second_length + first_length, 见 RetentionMergeAccumulator
+        RetentionMergeAccumulator accumulator = state.getAccumulator();
+        if (null == accumulator) {
+            check_lengths(first_length, second_length);
+            accumulator = new RetentionMergeAccumulator((int) first_length, (int) second_length);
+            state.setAccumulator(accumulator);
+        }
+
+        long first_value = BigintType.BIGINT.getLong(userState, 0);
+        long second_value = BigintType.BIGINT.getLong(userState, 1);
+
+        // 计算用户在每个起始日之后 1~second_length 天内是否留存
+        accumulator.addRolling(first_value, second_value);
+    }
+
+    // 参数超出位图范围时, 多出的起始日或留存天数只会得到0, 直接报错
+    private static void check_lengths(long first_length, long second_length) {
+        if (first_length < 1 || first_length > RetentionAccumulator.MAX_COUNT_SHORT) {
+            throw new PrestoException(INVALID_FUNCTION_ARGUMENT,
+                    "first_length must be between 1 and " + RetentionAccumulator.MAX_COUNT_SHORT + ": " + first_length);
+        }
+        if (second_length < 1 || first_length + second_length > RetentionAccumulator.MAX_COUNT_LONG + 1) {
+            throw new PrestoException(INVALID_FUNCTION_ARGUMENT,
+                    "second_length must be positive and first_length + second_length at most " + (RetentionAccumulator.MAX_COUNT_LONG + 1) + ": " + second_length);
+        }
+    }
+
+    @CombineFunction
+    public static void combine(RetentionMergeState state, RetentionMergeState otherState) {
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        RetentionMergeAccumulator accumulator = state.getAccumulator();
+        RetentionMergeAccumulator other = otherState.getAccumulator();
+        if (null == other) {
+            return;
+        }
+        if (null == accumulator) {
+            state.setAccumulator(other);
+        } else {
+            accumulator.merge(other);
+        }
+    }
+
+    @OutputFunction("array<bigint>")
+    public static void output(RetentionMergeState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        RetentionMergeAccumulator accumulator = state.getAccumulator();
+
+        // 构造结果: first_length日/周/月中每日/周/月的1~second_length滚动留存数, 最后为first_length日/周/月的总用户数
+        BlockBuilder blockBuilder = out.beginBlockEntry();
+        if (null != accumulator) {
+            for (long count : accumulator.finish()) {
+                BigintType.BIGINT.writeLong(blockBuilder, count);
+            }
+        }
+
+        out.closeEntry();
+        if (metrics) {
+            stats.output(accumulator == null ? 0 : accumulator.estimatedSize(), System.nanoTime() - start);
+        }
+    }
+}
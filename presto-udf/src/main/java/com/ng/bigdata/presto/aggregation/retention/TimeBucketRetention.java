@@ -0,0 +1,83 @@
+package com.ng.bigdata.presto.aggregation.retention;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.core.retention.RetentionAccumulator;
+import com.ng.bigdata.core.retention.RetentionBuckets;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+
+import java.util.Map;
+
+/**
+ * @Description: 计算 日，周，月 留存，第一阶段函数，直接以事件时间(毫秒)作为输入
+ * <p>
+ * 与 Retention 的结果相同，但不需要调用方每行计算 date_diff:
+ * 根据起始日期、时区和粒度(day/week/month)预先算好每个桶的边界(见 RetentionBuckets)，每行只做一次减法和除法或二分查找
+ * <p>
+ * 使用方式如下：
+ * select distinct_id, retention(ctime, '2020-06-20', 'Asia/Shanghai', 'day',
+ * 2, 3, event,'AppClick,AppPageView', 'AppClick,AppPageView') as user_state
+ * from ods_news.event
+ * where (logday >= '20200620' and logday < '20200622' and event in ('AppClick')) or
+ * (logday >= '20200621' and logday < '20200625' and event in ( 'AppClick'))
+ * group by distinct_id
+ * <p>
+ * 输出结果与 Retention 相同，可以直接作为 retention_merge 的输入
+ * @Author: kaisy
+ * @Date: 2020/10/16 11:00
+ * @Version V1.0
+ */
+@AggregationFunction("retention")
+public class TimeBucketRetention extends Base {
+    // 与 Retention 是同一个函数名, combine 和 output 也复用 Retention 的实现, 指标记在一起
+    private static final FunctionStats stats = UdfMetrics.function("retention");
+
+    @InputFunction
+    public static void input(RetentionState state,                                      // 存储每个用户的状态
+                             @SqlType(StandardTypes.BIGINT) long ctime,                 // 当前事件的发生时间(毫秒)
+                             @SqlType(StandardTypes.VARCHAR) Slice start_date,          // 当前查询的起始日期, yyyy-MM-dd
+                             @SqlType(StandardTypes.VARCHAR) Slice time_zone,           // 时区, 如 Asia/Shanghai
+                             @SqlType(StandardTypes.VARCHAR) Slice granularity,         // 粒度, day/week/month
+                             @SqlType(StandardTypes.INTEGER) long first_length,     // 当前查询的first长度(15天, 12周, 6月)
+                             @SqlType(StandardTypes.INTEGER) long second_length,    // 当前查询的second长度(30天, 8周, 3月)
+                             @SqlType(StandardTypes.VARCHAR) Slice event,           // 当前事件的名称, A,B,C,D
+                             @SqlType(StandardTypes.VARCHAR) Slice events_start,    // 当前查询的起始事件列表, 逗号分隔
+                             @SqlType(StandardTypes.VARCHAR) Slice events_end) {    // 当前查询的结束事件列表, 逗号分隔
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        // 获取events, 不存在时初始化
+        Map<Slice, Byte> pos_dict_start = get_events(events_start, 1);
+        Map<Slice, Byte> pos_dict_end = get_events(events_end, 2);
+        // 分桶覆盖 first_length + second_length 个时间段
+        RetentionBuckets buckets = get_buckets(start_date, time_zone, granularity, (int) (first_length + second_length));
+
+        RetentionAccumulator accumulator = state.getAccumulator();
+        if (null == accumulator) {
+            accumulator = new RetentionAccumulator();
+            state.setAccumulator(accumulator);
+        }
+        long offset = buckets.offset(ctime);
+        // 判读是否为起始事件
+        if (pos_dict_start.containsKey(event)) {
+            accumulator.addStart(offset, (int) first_length);
+        }
+        // 判断是否为结束事件
+        if (pos_dict_end.containsKey(event)) {
+            accumulator.addEnd(offset, (int) first_length, (int) second_length);
+        }
+    }
+
+    @CombineFunction
+    public static void combine(RetentionState state, RetentionState otherState) {
+        Retention.combine(state, otherState);
+    }
+
+    @OutputFunction("array<bigint>")
+    public static void output(RetentionState state, BlockBuilder out) {
+        Retention.output(state, out);
+    }
+}
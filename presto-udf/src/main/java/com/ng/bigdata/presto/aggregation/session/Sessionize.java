@@ -0,0 +1,134 @@
+package com.ng.bigdata.presto.aggregation.session;
+
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.core.funnel.FunnelAccumulator;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelState;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+
+import java.util.Arrays;
+
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/13 11:05
+ * @Desc: 会话切分的第一阶段，计算每个用户的会话数、会话总时长和事件数
+ * 复用漏斗的状态(presto-udf-core 中的 FunnelAccumulator)缓存事件时间，窗口大小的位置存放会话间隔，
+ * 输出时按时间排序，相邻两个事件间隔超过 gap_ms 就开始一个新会话
+ * 替代 lag + 累加求和 的窗口函数写法，只需要一次 hash 聚合
+ * <p>
+ * eg: 以30分钟为会话间隔
+ * <p>
+ * select distinct_id, sessionize(ctime, 30*60000, event) as user_state
+ * from ods_news.event
+ * where logday>='20200923' and logday<'20200930'
+ * group by distinct_id
+ * <p>
+ * 输出结果类似如下：
+ * user1 [3, 540000, 12]  表示user1有3个会话，会话总时长540000毫秒，共12个事件，平均每个会话4个事件
+ */
+@AggregationFunction("sessionize")
+public class Sessionize {
+    // 会话切分不区分事件，每个事件的索引都记为0
+    private static final byte SESSION_EVENT = 0;
+    private static final FunctionStats stats = UdfMetrics.function("sessionize");
+
+    @InputFunction
+    public static void input(FunnelState state,
+                             @SqlType(StandardTypes.BIGINT) long eventTime,  // 事件发生时间(毫秒)
+                             @SqlType(StandardTypes.BIGINT) long gap,        // 会话间隔(毫秒)
+                             @SqlType(StandardTypes.VARCHAR) Slice event) {  // 事件名称, 只参与计数
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        FunnelAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null) {
+            // 负的间隔会让每个事件都成为一个会话，直接报错
+            if (gap < 0) {
+                throw new PrestoException(INVALID_FUNCTION_ARGUMENT, "gap must not be negative: " + gap);
+            }
+            // 会话间隔放在窗口大小的位置，事件个数固定为1
+            accumulator = new FunnelAccumulator(gap, 1);
+            state.setAccumulator(accumulator);
+        }
+        long size = accumulator.estimatedSize();
+        accumulator.add(eventTime, SESSION_EVENT);
+        state.addMemoryUsage(accumulator.estimatedSize() - size);
+    }
+
+    @CombineFunction
+    public static void combine(FunnelState state1, FunnelState state2) {
+        FunnelAccumulator accumulator = state1.getAccumulator();
+        FunnelAccumulator other = state2.getAccumulator();
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+        if (other == null) {
+            return;
+        }
+        if (accumulator == null) {
+            state1.setAccumulator(other);
+        } else {
+            long size = accumulator.estimatedSize();
+            accumulator.merge(other);
+            state1.addMemoryUsage(accumulator.estimatedSize() - size);
+        }
+    }
+
+    @OutputFunction("array<bigint>")
+    public static void output(FunnelState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        FunnelAccumulator accumulator = state.getAccumulator();
+
+        // 构造结果: [会话数, 会话总时长, 事件数]
+        BlockBuilder blockBuilder = out.beginBlockEntry();
+        if (null == accumulator || accumulator.size() == 0) {
+            BigintType.BIGINT.writeLong(blockBuilder, 0);
+            BigintType.BIGINT.writeLong(blockBuilder, 0);
+            BigintType.BIGINT.writeLong(blockBuilder, 0);
+            out.closeEntry();
+            if (metrics) {
+                stats.output(accumulator == null ? 0 : accumulator.estimatedSize(), System.nanoTime() - start);
+            }
+            return;
+        }
+
+        long gap = accumulator.getWindows();
+        long[] sorted = new long[accumulator.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = accumulator.getTime(i);
+        }
+        Arrays.sort(sorted);
+
+        long sessions = 1;
+        long duration = 0;
+        long session_start = sorted[0];
+        long previous = session_start;
+        for (int i = 1; i < sorted.length; i++) {
+            long timestamp = sorted[i];
+            if (timestamp - previous > gap) {
+                // 超过间隔，结束当前会话
+                duration += previous - session_start;
+                session_start = timestamp;
+                sessions++;
+            }
+            previous = timestamp;
+        }
+        duration += previous - session_start;
+
+        BigintType.BIGINT.writeLong(blockBuilder, sessions);
+        BigintType.BIGINT.writeLong(blockBuilder, duration);
+        BigintType.BIGINT.writeLong(blockBuilder, sorted.length);
+        out.closeEntry();
+        if (metrics) {
+            stats.output(accumulator.estimatedSize(), System.nanoTime() - start);
+        }
+    }
+}
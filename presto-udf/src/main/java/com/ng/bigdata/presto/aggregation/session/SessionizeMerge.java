@@ -0,0 +1,126 @@
+package com.ng.bigdata.presto.aggregation.session;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.StandardTypes;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.*;
+import com.ng.bigdata.presto.aggregation.SliceState;
+import com.ng.bigdata.presto.metrics.FunctionStats;
+import com.ng.bigdata.presto.metrics.UdfMetrics;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/13 14:20
+ * @Desc: 会话切分的第二阶段，根据 sessionize 的结果汇总总量和分布
+ * eg:
+ * select sessionize_merge(user_state, 10) from
+ * (select distinct_id, sessionize(ctime, 30*60000, event) as user_state
+ * from ods_news.event
+ * where logday>='20200923' and logday<'20200930'
+ * group by distinct_id
+ * )
+ * <p>
+ * 结果为 4 + 3 * buckets 个值:
+ * [用户数, 会话总数, 会话总时长(毫秒), 事件总数,
+ * 每用户会话数分布(buckets个: 1, 2, ..., >=buckets),
+ * 每会话平均事件数分布(buckets个: 1, 2, ..., >=buckets),
+ * 每会话平均时长分布(buckets个, 按分钟: [0,1), [1,2), ..., >=buckets-1)]
+ */
+@AggregationFunction("sessionize_merge")
+public class SessionizeMerge {
+    // 状态中每个值都是long
+    private static final int LONG_LENGTH = 8;
+    // 头部的四个汇总值
+    private static final int TOTAL_COUNT = 4;
+    private static final long MINUTE = 60 * 1000;
+    // 每个分布的最大桶个数，状态为 (TOTAL_COUNT + 3 * buckets) 个 long
+    private static final int MAX_BUCKETS = 1000;
+    private static final FunctionStats stats = UdfMetrics.function("sessionize_merge");
+
+    @InputFunction
+    public static void input(SliceState state,
+                             @SqlType("array<bigint>") Block userState,     // 每个用户的状态 [会话数, 会话总时长, 事件数]
+                             @SqlType(StandardTypes.INTEGER) long buckets) { // 每个分布的桶个数
+        if (UdfMetrics.enabled()) {
+            stats.input();
+        }
+        if (buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new PrestoException(INVALID_FUNCTION_ARGUMENT, "buckets must be between 1 and " + MAX_BUCKETS + ": " + buckets);
+        }
+        long sessions = BigintType.BIGINT.getLong(userState, 0);
+        if (sessions == 0) {
+            return;
+        }
+        long duration = BigintType.BIGINT.getLong(userState, 1);
+        long events = BigintType.BIGINT.getLong(userState, 2);
+
+        Slice slice = state.getSlice();
+        if (null == slice) {
+            slice = Slices.allocate((int) (TOTAL_COUNT + 3 * buckets) * LONG_LENGTH);
+        }
+
+        increment(slice, 0, 1);
+        increment(slice, 1, sessions);
+        increment(slice, 2, duration);
+        increment(slice, 3, events);
+
+        int bucket_count = (int) buckets;
+        increment(slice, TOTAL_COUNT + bucket(sessions - 1, bucket_count), 1);
+        increment(slice, TOTAL_COUNT + bucket_count + bucket(events / sessions - 1, bucket_count), 1);
+        increment(slice, TOTAL_COUNT + 2 * bucket_count + bucket(duration / sessions / MINUTE, bucket_count), 1);
+
+        state.setSlice(slice);
+    }
+
+    @CombineFunction
+    public static void combine(SliceState state, SliceState otherState) {
+        Slice slice = state.getSlice();
+        Slice otherslice = otherState.getSlice();
+        if (UdfMetrics.enabled()) {
+            stats.combine();
+        }
+
+        if (null == slice) {
+            // tip otherslice 可能直接引用输入的 Block，后面会原地累加，所以拷贝一份
+            state.setSlice(otherslice == null ? null : Slices.copyOf(otherslice));
+        } else if (null != otherslice) {
+            for (int index = 0; index < slice.length(); index += LONG_LENGTH) {
+                slice.setLong(index, slice.getLong(index) + otherslice.getLong(index));
+            }
+            state.setSlice(slice);
+        }
+    }
+
+    @OutputFunction("array<bigint>")
+    public static void output(SliceState state, BlockBuilder out) {
+        boolean metrics = UdfMetrics.enabled();
+        long start = metrics ? System.nanoTime() : 0;
+        Slice slice = state.getSlice();
+        BlockBuilder blockBuilder = out.beginBlockEntry();
+        if (null != slice) {
+            for (int index = 0; index < slice.length(); index += LONG_LENGTH) {
+                BigintType.BIGINT.writeLong(blockBuilder, slice.getLong(index));
+            }
+        }
+        out.closeEntry();
+        if (metrics) {
+            stats.output(slice == null ? 0 : slice.length(), System.nanoTime() - start);
+        }
+    }
+
+    // 超出范围的值落到最后一个桶
+    private static int bucket(long value, int buckets) {
+        return (int) Math.max(0, Math.min(value, buckets - 1));
+    }
+
+    private static void increment(Slice slice, int position, long value) {
+        int index = position * LONG_LENGTH;
+        slice.setLong(index, slice.getLong(index) + value);
+    }
+}
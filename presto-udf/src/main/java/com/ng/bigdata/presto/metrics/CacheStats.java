@@ -0,0 +1,49 @@
+package com.ng.bigdata.presto.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/20 10:15
+ * @Desc: 缓存的命中、未命中和淘汰次数
+ */
+public class CacheStats
+        implements CacheStatsMBean {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public void evict(long count) {
+        evictions.add(count);
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+}
@@ -0,0 +1,16 @@
+package com.ng.bigdata.presto.metrics;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/20 10:10
+ * @Desc: 事件字典等缓存的 JMX 指标
+ */
+public interface CacheStatsMBean {
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    void reset();
+}
@@ -0,0 +1,102 @@
+package com.ng.bigdata.presto.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/20 10:05
+ * @Desc: 单个聚合函数的指标，计数都用 LongAdder，多个 driver 线程并发更新时没有竞争
+ * 状态大小在 output 时记录，分布按 1/HISTOGRAM_SAMPLE 抽样
+ */
+public class FunctionStats
+        implements FunctionStatsMBean {
+    private static final int HISTOGRAM_SAMPLE = 16;
+    private static final int HISTOGRAM_BUCKETS = 48;
+
+    private final LongAdder inputRows = new LongAdder();
+    private final LongAdder combines = new LongAdder();
+    private final LongAdder outputs = new LongAdder();
+    private final LongAdder outputNanos = new LongAdder();
+    private final LongAdder stateBytes = new LongAdder();
+    private final LongAccumulator maxStateBytes = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] histogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+    public FunctionStats() {
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    public void input() {
+        inputRows.increment();
+    }
+
+    public void combine() {
+        combines.increment();
+    }
+
+    public void output(long bytes, long nanos) {
+        outputs.increment();
+        outputNanos.add(nanos);
+        stateBytes.add(bytes);
+        maxStateBytes.accumulate(bytes);
+        if (ThreadLocalRandom.current().nextInt(HISTOGRAM_SAMPLE) == 0) {
+            histogram[Math.min(64 - Long.numberOfLeadingZeros(bytes), HISTOGRAM_BUCKETS - 1)].increment();
+        }
+    }
+
+    @Override
+    public long getInputRows() {
+        return inputRows.sum();
+    }
+
+    @Override
+    public long getCombines() {
+        return combines.sum();
+    }
+
+    @Override
+    public long getOutputs() {
+        return outputs.sum();
+    }
+
+    @Override
+    public long getOutputNanos() {
+        return outputNanos.sum();
+    }
+
+    @Override
+    public long getMaxStateBytes() {
+        return maxStateBytes.get();
+    }
+
+    @Override
+    public double getAvgStateBytes() {
+        long count = outputs.sum();
+        return count == 0 ? 0 : (double) stateBytes.sum() / count;
+    }
+
+    @Override
+    public long[] getStateBytesHistogram() {
+        long[] values = new long[histogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            values[i] = histogram[i].sum();
+        }
+        return values;
+    }
+
+    @Override
+    public void reset() {
+        inputRows.reset();
+        combines.reset();
+        outputs.reset();
+        outputNanos.reset();
+        stateBytes.reset();
+        maxStateBytes.reset();
+        for (LongAdder bucket : histogram) {
+            bucket.reset();
+        }
+    }
+}
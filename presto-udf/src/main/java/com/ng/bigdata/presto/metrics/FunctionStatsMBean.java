@@ -0,0 +1,25 @@
+package com.ng.bigdata.presto.metrics;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/20 10:00
+ * @Desc: 单个聚合函数的 JMX 指标
+ */
+public interface FunctionStatsMBean {
+    long getInputRows();
+
+    long getCombines();
+
+    long getOutputs();
+
+    long getOutputNanos();
+
+    long getMaxStateBytes();
+
+    double getAvgStateBytes();
+
+    // 按 2 的幂分桶的状态大小分布(抽样)，第 i 个值为 [2^(i-1), 2^i) 字节的状态个数
+    long[] getStateBytesHistogram();
+
+    void reset();
+}
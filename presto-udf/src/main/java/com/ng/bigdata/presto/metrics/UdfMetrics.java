@@ -0,0 +1,96 @@
+package com.ng.bigdata.presto.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/20 10:30
+ * @Desc: 插件的指标入口，函数和缓存的指标都在这里创建，加载插件时注册到 JMX:
+ * com.ng.bigdata.presto:type=UdfMetrics
+ * com.ng.bigdata.presto:type=FunctionStats,name=funnel
+ * com.ng.bigdata.presto:type=CacheStats,name=funnel_events
+ * <p>
+ * 函数中先判断 enabled() 再更新指标，关闭时每行只多一次 volatile 读
+ * 默认关闭，可以用 -Dpresto.udf.metrics=true 打开，或者运行时通过 JMX 的 Enabled 属性打开
+ */
+public class UdfMetrics
+        implements UdfMetricsMBean {
+    private static final Logger log = Logger.getLogger(UdfMetrics.class.getName());
+
+    private static final String DOMAIN = "com.ng.bigdata.presto";
+
+    private static final UdfMetrics INSTANCE = new UdfMetrics();
+
+    private static final Map<String, FunctionStats> functions = new ConcurrentHashMap<>();
+    private static final Map<String, CacheStats> caches = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = Boolean.getBoolean("presto.udf.metrics");
+    private static volatile boolean registered;
+
+    private UdfMetrics() {
+    }
+
+    public static UdfMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    public static FunctionStats function(String name) {
+        return functions.computeIfAbsent(name, k -> export(new FunctionStats(), "type=FunctionStats,name=" + k));
+    }
+
+    public static CacheStats cache(String name) {
+        return caches.computeIfAbsent(name, k -> export(new CacheStats(), "type=CacheStats,name=" + k));
+    }
+
+    /**
+     * 注册到平台 MBeanServer，重复调用只注册一次，之后创建的指标会在创建时注册
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        export(INSTANCE, "type=UdfMetrics");
+        functions.forEach((name, stats) -> export(stats, "type=FunctionStats,name=" + name));
+        caches.forEach((name, stats) -> export(stats, "type=CacheStats,name=" + name));
+    }
+
+    private static <T> T export(T bean, String name) {
+        if (!registered) {
+            return bean;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, new ObjectName(DOMAIN + ":" + name));
+        } catch (JMException e) {
+            // 同一个 JVM 中插件被加载多次(不同的 ClassLoader)时名字会冲突，指标只是辅助信息，不影响函数
+            log.log(Level.WARNING, "failed to export " + DOMAIN + ":" + name, e);
+        }
+        return bean;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    @Override
+    public void reset() {
+        functions.values().forEach(FunctionStats::reset);
+        caches.values().forEach(CacheStats::reset);
+    }
+}
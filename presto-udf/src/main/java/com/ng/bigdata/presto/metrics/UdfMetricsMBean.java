@@ -0,0 +1,15 @@
+package com.ng.bigdata.presto.metrics;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/20 10:20
+ * @Desc: 指标的总开关，可以在运行时通过 JMX 打开或关闭
+ */
+public interface UdfMetricsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    // 清空所有函数和缓存的指标
+    void reset();
+}
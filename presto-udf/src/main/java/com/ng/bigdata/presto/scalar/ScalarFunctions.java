@@ -0,0 +1,122 @@
+package com.ng.bigdata.presto.scalar;
+
+import com.facebook.presto.spi.function.Description;
+import com.facebook.presto.spi.function.LiteralParameters;
+import com.facebook.presto.spi.function.ScalarFunction;
+import com.facebook.presto.spi.function.SqlType;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceUtf8;
+import io.airlift.slice.Slices;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/9 18:56
+ * @Desc: 字符串标量函数，直接在 UTF-8 字节上计算
+ * 纯 ASCII 的输入每次按 8 个字节(getLong)处理，没有字节发生变化时直接返回原 Slice，
+ * 只有遇到非 ASCII 字节才退回到 SliceUtf8 的按码点处理
+ */
+public class ScalarFunctions {
+    // 每个字节的最高位，用来判断 8 个字节是否都是 ASCII
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // 'a'..'z': 每个字节加上 (0x80 - 'a') 后最高位为1表示 >= 'a'，加上 (0x80 - ('z' + 1)) 后最高位为1表示 > 'z'
+    private static final long LOWER_FROM = 0x1F1F1F1F1F1F1F1FL;
+    private static final long LOWER_TO = 0x0505050505050505L;
+
+    // 'A'..'Z': 同上
+    private static final long UPPER_FROM = 0x3F3F3F3F3F3F3F3FL;
+    private static final long UPPER_TO = 0x2525252525252525L;
+
+    @ScalarFunction("my_upper")  // 函数名
+    @Description("大小写转换")  // 注释
+    @LiteralParameters("x")
+    @SqlType("varchar(x)")
+    public static Slice toUpper(@SqlType("varchar(x)") Slice input) {
+        Slice result = flipAsciiCase(input, LOWER_FROM, LOWER_TO, 'a', 'z');
+        return result == null ? SliceUtf8.toUpperCase(input) : result;
+    }
+
+    @ScalarFunction("my_lower")
+    @Description("转换为小写")
+    @LiteralParameters("x")
+    @SqlType("varchar(x)")
+    public static Slice toLower(@SqlType("varchar(x)") Slice input) {
+        Slice result = flipAsciiCase(input, UPPER_FROM, UPPER_TO, 'A', 'Z');
+        return result == null ? SliceUtf8.toLowerCase(input) : result;
+    }
+
+    @ScalarFunction("my_trim")
+    @Description("去掉首尾空白字符")
+    @LiteralParameters("x")
+    @SqlType("varchar(x)")
+    public static Slice trim(@SqlType("varchar(x)") Slice input) {
+        int length = input.length();
+        int start = 0;
+        while (start < length && isAsciiWhitespace(input.getByte(start))) {
+            start++;
+        }
+        int end = length;
+        while (end > start && isAsciiWhitespace(input.getByte(end - 1))) {
+            end--;
+        }
+        // tip 首尾是非 ASCII 字节时可能是 Unicode 空白(如全角空格)，交给 SliceUtf8 处理
+        if (end > start && (input.getByte(start) < 0 || input.getByte(end - 1) < 0)) {
+            return SliceUtf8.trim(input);
+        }
+        if (start == 0 && end == length) {
+            return input;
+        }
+        // tip 只返回原 Slice 的一个视图，不拷贝
+        return input.slice(start, end - start);
+    }
+
+    @ScalarFunction("my_normalize_event")
+    @Description("事件名归一化: 去掉首尾空白并转换为小写")
+    @LiteralParameters("x")
+    @SqlType("varchar(x)")
+    public static Slice normalizeEvent(@SqlType("varchar(x)") Slice input) {
+        return toLower(trim(input));
+    }
+
+    /**
+     * 将 ASCII 字节中处于 [from, to] 的字母翻转大小写(异或 0x20)
+     *
+     * @return 没有任何变化时返回 input 本身；遇到非 ASCII 字节返回 null，由调用方按码点处理
+     */
+    private static Slice flipAsciiCase(Slice input, long fromBias, long toBias, int from, int to) {
+        int length = input.length();
+        Slice output = null;
+        int index = 0;
+        for (; index + 8 <= length; index += 8) {
+            long word = input.getLong(index);
+            if ((word & HIGH_BITS) != 0) {
+                return null;
+            }
+            // tip 每个字节都 < 0x80，相加不会向相邻字节进位，最高位即为该字节的比较结果
+            long mask = ((word + fromBias) & ~(word + toBias)) & HIGH_BITS;
+            if (mask != 0) {
+                if (output == null) {
+                    output = Slices.copyOf(input);
+                }
+                output.setLong(index, word ^ (mask >>> 2));
+            }
+        }
+        for (; index < length; index++) {
+            int b = input.getByte(index);
+            if (b < 0) {
+                return null;
+            }
+            if (b >= from && b <= to) {
+                if (output == null) {
+                    output = Slices.copyOf(input);
+                }
+                output.setByte(index, b ^ 0x20);
+            }
+        }
+        return output == null ? input : output;
+    }
+
+    private static boolean isAsciiWhitespace(byte b) {
+        return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+    }
+}
@@ -0,0 +1,170 @@
+package com.ng.bigdata.presto.aggregation;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.spi.function.AccumulatorState;
+import com.facebook.presto.spi.function.AccumulatorStateSerializer;
+import com.ng.bigdata.core.funnel.FunnelAccumulator;
+import com.ng.bigdata.core.funnel.FunnelMergeAccumulator;
+import com.ng.bigdata.core.path.PathAccumulator;
+import com.ng.bigdata.core.retention.RetentionAccumulator;
+import com.ng.bigdata.core.retention.RetentionMergeAccumulator;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelMergeState;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelMergeStateFactory;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelMergeStateSerializer;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelState;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelStateFactory;
+import com.ng.bigdata.presto.aggregation.funnel.FunnelStateSerializer;
+import com.ng.bigdata.presto.aggregation.path.PathState;
+import com.ng.bigdata.presto.aggregation.path.PathStateFactory;
+import com.ng.bigdata.presto.aggregation.path.PathStateSerializer;
+import com.ng.bigdata.presto.aggregation.path.PathSummary;
+import com.ng.bigdata.presto.aggregation.path.PathSummaryState;
+import com.ng.bigdata.presto.aggregation.path.PathSummaryStateFactory;
+import com.ng.bigdata.presto.aggregation.path.PathSummaryStateSerializer;
+import com.ng.bigdata.presto.aggregation.retention.RetentionMergeState;
+import com.ng.bigdata.presto.aggregation.retention.RetentionMergeStateFactory;
+import com.ng.bigdata.presto.aggregation.retention.RetentionMergeStateSerializer;
+import com.ng.bigdata.presto.aggregation.retention.RetentionState;
+import com.ng.bigdata.presto.aggregation.retention.RetentionStateFactory;
+import com.ng.bigdata.presto.aggregation.retention.RetentionStateSerializer;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/22 15:00
+ * @Desc: 各个状态序列化后再反序列化，累加器的内容不变，空状态仍为空
+ */
+public class TestStateSerializers {
+    @Test
+    public void testFunnel() {
+        FunnelStateSerializer serializer = new FunnelStateSerializer();
+        FunnelState state = new FunnelStateFactory().createSingleState();
+        FunnelAccumulator accumulator = new FunnelAccumulator(7 * 86400000L, 3);
+        accumulator.add(1602000000000L, (byte) 0);
+        accumulator.add(1602000001000L, (byte) 2);
+        accumulator.add(1602000000500L, (byte) 1);
+        state.setAccumulator(accumulator);
+
+        FunnelState copy = roundTrip(serializer, state, new FunnelStateFactory().createSingleState());
+        FunnelAccumulator result = copy.getAccumulator();
+        assertEquals(accumulator.getWindows(), result.getWindows());
+        assertEquals(accumulator.getEventCount(), result.getEventCount());
+        assertNull(result.getWindowList());
+        assertEquals(accumulator.size(), result.size());
+        for (int i = 0; i < accumulator.size(); i++) {
+            assertEquals(accumulator.getTime(i), result.getTime(i));
+            assertEquals(accumulator.getEvent(i), result.getEvent(i));
+        }
+        assertEquals(accumulator.finish(), result.finish());
+    }
+
+    @Test
+    public void testFunnelWindows() {
+        FunnelStateSerializer serializer = new FunnelStateSerializer();
+        FunnelState state = new FunnelStateFactory().createSingleState();
+        FunnelAccumulator accumulator = new FunnelAccumulator(new long[] {10, 100}, 2);
+        accumulator.add(0, (byte) 0);
+        accumulator.add(50, (byte) 1);
+        state.setAccumulator(accumulator);
+
+        FunnelAccumulator result = roundTrip(serializer, state, new FunnelStateFactory().createSingleState()).getAccumulator();
+        assertArrayEquals(new long[] {10, 100}, result.getWindowList());
+        assertArrayEquals(new int[] {1, 2}, result.finishWindows());
+    }
+
+    @Test
+    public void testFunnelMerge() {
+        FunnelMergeStateSerializer serializer = new FunnelMergeStateSerializer();
+        FunnelMergeState state = new FunnelMergeStateFactory().createSingleState();
+        state.setAccumulator(new FunnelMergeAccumulator(new long[] {30, 20, 10}));
+
+        FunnelMergeState copy = roundTrip(serializer, state, new FunnelMergeStateFactory().createSingleState());
+        assertArrayEquals(new long[] {30, 20, 10}, copy.getAccumulator().finish());
+    }
+
+    @Test
+    public void testRetention() {
+        RetentionStateSerializer serializer = new RetentionStateSerializer();
+        RetentionState state = new RetentionStateFactory().createSingleState();
+        state.setAccumulator(new RetentionAccumulator((short) 0b101, 1L << 62 | 0b11));
+
+        RetentionState copy = roundTrip(serializer, state, new RetentionStateFactory().createSingleState());
+        assertArrayEquals(new long[] {0b101, 1L << 62 | 0b11}, copy.getAccumulator().finish());
+    }
+
+    @Test
+    public void testRetentionMerge() {
+        RetentionMergeStateSerializer serializer = new RetentionMergeStateSerializer();
+        RetentionMergeState state = new RetentionMergeStateFactory().createSingleState();
+        RetentionMergeAccumulator accumulator = new RetentionMergeAccumulator(2, 3);
+        accumulator.add(0b11, 0b1110);
+        state.setAccumulator(accumulator);
+
+        RetentionMergeAccumulator result = roundTrip(serializer, state, new RetentionMergeStateFactory().createSingleState()).getAccumulator();
+        assertEquals(2, result.getFirstLength());
+        assertEquals(3, result.getSecondLength());
+        assertArrayEquals(accumulator.finish(), result.finish());
+    }
+
+    @Test
+    public void testPath() {
+        PathStateSerializer serializer = new PathStateSerializer();
+        PathState state = new PathStateFactory().createSingleState();
+        PathAccumulator<Slice> accumulator = new PathAccumulator<>(3, Slices.utf8Slice("AppStart"), Slice::length);
+        int start = accumulator.define(Slices.utf8Slice("AppStart"));
+        int click = accumulator.define(Slices.utf8Slice("AppClick"));
+        accumulator.add(20, click);
+        accumulator.add(10, start);
+        accumulator.add(30, click);
+        state.setAccumulator(accumulator);
+
+        PathAccumulator<Slice> result = roundTrip(serializer, state, new PathStateFactory().createSingleState()).getAccumulator();
+        assertEquals(3, result.getMaxDepth());
+        assertEquals(Slices.utf8Slice("AppStart"), result.getStartEvent());
+        assertEquals(2, result.dictionarySize());
+        assertEquals(Slices.utf8Slice("AppClick"), result.getName(click));
+        assertEquals(accumulator.size(), result.size());
+        assertArrayEquals(accumulator.finish(), result.finish());
+    }
+
+    @Test
+    public void testPathSummary() {
+        PathSummaryStateSerializer serializer = new PathSummaryStateSerializer();
+        PathSummaryState state = new PathSummaryStateFactory().createSingleState();
+        PathSummary summary = new PathSummary(2);
+        summary.add(Slices.utf8Slice("AppStart,AppClick"), 5);
+        summary.add(Slices.utf8Slice("AppStart,AppView"), 3);
+        summary.add(Slices.utf8Slice("AppStart"), 1);
+        state.setSummary(summary);
+
+        PathSummary result = roundTrip(serializer, state, new PathSummaryStateFactory().createSingleState()).getSummary();
+        assertEquals(2, result.getCapacity());
+        assertEquals(2, result.size());
+        assertEquals(5, result.getCount(Slices.utf8Slice("AppStart,AppClick")));
+        assertEquals(4, result.getCount(Slices.utf8Slice("AppStart")));
+        assertEquals(0, result.getCount(Slices.utf8Slice("AppStart,AppView")));
+    }
+
+    @Test
+    public void testNull() {
+        assertNull(roundTrip(new FunnelStateSerializer(), new FunnelStateFactory().createSingleState(), new FunnelStateFactory().createSingleState()).getAccumulator());
+        assertNull(roundTrip(new RetentionStateSerializer(), new RetentionStateFactory().createSingleState(), new RetentionStateFactory().createSingleState()).getAccumulator());
+        assertNull(roundTrip(new PathStateSerializer(), new PathStateFactory().createSingleState(), new PathStateFactory().createSingleState()).getAccumulator());
+        assertNull(roundTrip(new PathSummaryStateSerializer(), new PathSummaryStateFactory().createSingleState(), new PathSummaryStateFactory().createSingleState()).getSummary());
+    }
+
+    private static <T extends AccumulatorState> T roundTrip(AccumulatorStateSerializer<T> serializer, T state, T target) {
+        BlockBuilder out = serializer.getSerializedType().createBlockBuilder(null, 1);
+        serializer.serialize(state, out);
+        Block block = out.build();
+        serializer.deserialize(block, 0, target);
+        return target;
+    }
+}
@@ -0,0 +1,127 @@
+package com.ng.bigdata.presto.aggregation.path;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/23 11:00
+ * @Desc: PathSummary 的最小堆替换、合并规则和裁剪
+ */
+public class TestPathSummary {
+    @Test
+    public void testExactUnderCapacity() {
+        PathSummary summary = new PathSummary(4);
+        summary.add(path("a"), 1);
+        summary.add(path("b"), 2);
+        summary.add(path("a"), 3);
+        assertEquals(2, summary.size());
+        assertEquals(4, summary.getCount(path("a")));
+        assertEquals(2, summary.getCount(path("b")));
+        assertEquals(0, summary.getCount(path("c")));
+    }
+
+    @Test
+    public void testReplaceMinimum() {
+        PathSummary summary = new PathSummary(3);
+        summary.add(path("a"), 5);
+        summary.add(path("b"), 3);
+        summary.add(path("c"), 4);
+        // b 原来在堆顶，计数增加后要下沉，堆顶变为 c
+        summary.add(path("b"), 3);
+        // 满了之后新路径替换计数最小的 c，并继承其计数
+        summary.add(path("d"), 1);
+        assertEquals(3, summary.size());
+        assertEquals(5, summary.getCount(path("a")));
+        assertEquals(6, summary.getCount(path("b")));
+        assertEquals(0, summary.getCount(path("c")));
+        assertEquals(5, summary.getCount(path("d")));
+    }
+
+    @Test
+    public void testRandomGuarantees() {
+        // tip Space-Saving 的性质: 计数之和等于总数，计数是上界，真实计数超过 总数/capacity 的路径一定保留
+        Random random = new Random(6);
+        for (int round = 0; round < 200; round++) {
+            int capacity = 1 + random.nextInt(10);
+            PathSummary summary = new PathSummary(capacity);
+            Map<Slice, Long> truth = new HashMap<>();
+            long total = 0;
+            int rows = random.nextInt(500);
+            for (int i = 0; i < rows; i++) {
+                // 偏斜分布，少数路径出现次数很多
+                Slice key = path("p" + (int) Math.abs(random.nextGaussian() * 5));
+                long count = 1 + random.nextInt(3);
+                summary.add(key, count);
+                truth.merge(key, count, Long::sum);
+                total += count;
+            }
+            long sum = 0;
+            for (Map.Entry<Slice, Long> entry : truth.entrySet()) {
+                long count = summary.getCount(entry.getKey());
+                sum += count;
+                if (count > 0) {
+                    assertTrue("round " + round, count >= entry.getValue());
+                }
+                if (entry.getValue() * capacity > total) {
+                    assertTrue("round " + round, count > 0);
+                }
+                if (truth.size() <= capacity) {
+                    assertEquals("round " + round, (long) entry.getValue(), count);
+                }
+            }
+            assertEquals("round " + round, total, sum);
+            assertEquals("round " + round, Math.min(capacity, truth.size()), summary.size());
+        }
+    }
+
+    @Test
+    public void testMergeFull() {
+        PathSummary left = new PathSummary(2);
+        left.add(path("a"), 5);
+        left.add(path("b"), 3);
+        PathSummary right = new PathSummary(2);
+        right.add(path("a"), 2);
+        right.add(path("c"), 4);
+
+        // 一方缺失的路径按该方的最小计数补上: b = 3 + 2, c = 4 + 3，再只保留计数最大的2个
+        left.merge(right);
+        assertEquals(2, left.size());
+        assertEquals(7, left.getCount(path("a")));
+        assertEquals(0, left.getCount(path("b")));
+        assertEquals(7, left.getCount(path("c")));
+    }
+
+    @Test
+    public void testMergeNotFull() {
+        // 没满的一方记录的是准确计数，缺失的路径补0
+        PathSummary left = new PathSummary(3);
+        left.add(path("a"), 5);
+        left.add(path("b"), 3);
+        PathSummary right = new PathSummary(3);
+        right.add(path("c"), 4);
+
+        left.merge(right);
+        assertEquals(3, left.size());
+        assertEquals(5, left.getCount(path("a")));
+        assertEquals(3, left.getCount(path("b")));
+        assertEquals(4, left.getCount(path("c")));
+
+        // 合并后的堆仍然有效，新路径替换计数最小的 b
+        left.add(path("d"), 1);
+        assertEquals(0, left.getCount(path("b")));
+        assertEquals(4, left.getCount(path("d")));
+    }
+
+    private static Slice path(String value) {
+        return Slices.utf8Slice(value);
+    }
+}
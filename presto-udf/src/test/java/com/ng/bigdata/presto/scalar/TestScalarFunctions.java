@@ -0,0 +1,104 @@
+package com.ng.bigdata.presto.scalar;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @User: kaisy
+ * @Date: 2020/10/23 16:00
+ * @Desc: 字符串标量函数: 按 8 字节处理的边界、没有变化时返回原 Slice、非 ASCII 时退回按码点处理
+ */
+public class TestScalarFunctions {
+    @Test
+    public void testWordEdge() {
+        // tip 长度 7 只走逐字节，8 正好一个 long，9 为一个 long 加一个字节
+        assertEquals(utf8("ABCDEFG"), ScalarFunctions.toUpper(utf8("abcdefg")));
+        assertEquals(utf8("ABCDEFGH"), ScalarFunctions.toUpper(utf8("abcdefgh")));
+        assertEquals(utf8("ABCDEFGHI"), ScalarFunctions.toUpper(utf8("abcdefghi")));
+        assertEquals(utf8("abcdefg"), ScalarFunctions.toLower(utf8("ABCDEFG")));
+        assertEquals(utf8("abcdefgh"), ScalarFunctions.toLower(utf8("ABCDEFGH")));
+        assertEquals(utf8("abcdefghi"), ScalarFunctions.toLower(utf8("ABCDEFGHI")));
+        // 只有 long 的最后一个字节或者尾部的第一个字节需要转换
+        assertEquals(utf8("1234567Z9"), ScalarFunctions.toUpper(utf8("1234567z9")));
+        assertEquals(utf8("12345678Z"), ScalarFunctions.toUpper(utf8("12345678z")));
+    }
+
+    @Test
+    public void testLetterBoundaries() {
+        // '@' '[' '`' '{' 紧挨着字母的范围，不能被转换
+        assertEquals(utf8("@AZ[`AZ{@AZ[`AZ{"), ScalarFunctions.toUpper(utf8("@AZ[`az{@AZ[`az{")));
+        assertEquals(utf8("@az[`az{@az[`az{"), ScalarFunctions.toLower(utf8("@AZ[`az{@AZ[`az{")));
+    }
+
+    @Test
+    public void testAllAscii() {
+        StringBuilder ascii = new StringBuilder();
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (char c = 0; c < 0x80; c++) {
+                ascii.append(c);
+            }
+        }
+        // 从不同的偏移开始，让每个字节都落在 long 的每个位置上
+        for (int start = 0; start < 8; start++) {
+            String value = ascii.substring(start);
+            assertEquals(utf8(value.toUpperCase(Locale.ROOT)), ScalarFunctions.toUpper(utf8(value)));
+            assertEquals(utf8(value.toLowerCase(Locale.ROOT)), ScalarFunctions.toLower(utf8(value)));
+        }
+    }
+
+    @Test
+    public void testUnchangedReturnsSameSlice() {
+        for (String value : new String[] {"", "ABCDEFG", "ABCDEFGH", "ABCDEFGHI", "APP_START-2020"}) {
+            Slice input = utf8(value);
+            assertSame(input, ScalarFunctions.toUpper(input));
+        }
+        for (String value : new String[] {"", "abcdefg", "abcdefgh", "abcdefghi", "app_start-2020"}) {
+            Slice input = utf8(value);
+            assertSame(input, ScalarFunctions.toLower(input));
+        }
+    }
+
+    @Test
+    public void testNonAsciiFallback() {
+        // 非 ASCII 字节在尾部、跨 long 边界和在第一个 long 中
+        assertEquals(utf8("ABCDEFGHÉ"), ScalarFunctions.toUpper(utf8("abcdefghé")));
+        assertEquals(utf8("ABCDEFGÉ"), ScalarFunctions.toUpper(utf8("abcdefgé")));
+        assertEquals(utf8("ÉABCDEFGH"), ScalarFunctions.toUpper(utf8("éabcdefgh")));
+        assertEquals(utf8("abcdefgh中文é"), ScalarFunctions.toLower(utf8("ABCDEFGH中文É")));
+    }
+
+    @Test
+    public void testTrim() {
+        assertEquals(utf8("app start"), ScalarFunctions.trim(utf8(" \t app start\r\n ")));
+        assertEquals(utf8(""), ScalarFunctions.trim(utf8(" \t\n")));
+        Slice input = utf8("AppStart");
+        assertSame(input, ScalarFunctions.trim(input));
+        assertSame(Slices.EMPTY_SLICE, ScalarFunctions.trim(Slices.EMPTY_SLICE));
+    }
+
+    @Test
+    public void testTrimUnicodeWhitespace() {
+        // tip 全角空格是 Unicode 空白，首尾是非 ASCII 字节时交给 SliceUtf8
+        assertEquals(utf8("AppStart"), ScalarFunctions.trim(utf8("　AppStart　")));
+        assertEquals(utf8("AppStart"), ScalarFunctions.trim(utf8(" 　 AppStart ")));
+        assertEquals(utf8("中文"), ScalarFunctions.trim(utf8(" 中文 ")));
+    }
+
+    @Test
+    public void testNormalizeEvent() {
+        assertEquals(utf8("appstart"), ScalarFunctions.normalizeEvent(utf8("  AppStart\t")));
+        assertEquals(utf8("appstart"), ScalarFunctions.normalizeEvent(utf8("　APPSTART　")));
+        Slice input = utf8("appstart");
+        assertSame(input, ScalarFunctions.normalizeEvent(input));
+    }
+
+    private static Slice utf8(String value) {
+        return Slices.utf8Slice(value);
+    }
+}